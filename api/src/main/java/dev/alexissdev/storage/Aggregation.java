@@ -0,0 +1,41 @@
+package dev.alexissdev.storage;
+
+/**
+ * Accumulator applied to every group by {@link ModelService#aggregateSync(String, Aggregation, String)}.
+ */
+public enum Aggregation {
+
+    /**
+     * Number of models in the group, it doesn't need a value field.
+     */
+    COUNT(false),
+    /**
+     * Sum of the value field, non numeric values are ignored.
+     */
+    SUM(true),
+    /**
+     * Average of the value field, non numeric values are ignored.
+     */
+    AVG(true),
+    /**
+     * Smallest value of the value field.
+     */
+    MIN(true),
+    /**
+     * Largest value of the value field.
+     */
+    MAX(true);
+
+    private final boolean valueRequired;
+
+    Aggregation(boolean valueRequired) {
+        this.valueRequired = valueRequired;
+    }
+
+    /**
+     * @return whether the aggregation is computed over a value field.
+     */
+    public boolean isValueRequired() {
+        return valueRequired;
+    }
+}
@@ -4,10 +4,14 @@ import dev.alexissdev.storage.model.Model;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
-public interface ModelService<T extends Model> {
+public interface ModelService<T extends Model>
+        extends AutoCloseable {
 
     Consumer<? extends Model> NOOP = model -> { };
     String ID_FIELD = "id";
@@ -24,9 +28,124 @@ public interface ModelService<T extends Model> {
 
     @Nullable List<T> findAllSync(@NotNull Consumer<T> postLoadAction);
 
+    /**
+     * Checks whether a model with the given id is stored. The default implementation loads it,
+     * backends able to check it without transferring the model override it.
+     *
+     * @param id
+     * 	The id of the model.
+     *
+     * @return Whether the model exists.
+     */
+    default boolean existsSync(@NotNull String id) {
+        return findSync(id) != null;
+    }
+
+    /**
+     * Counts the stored models. The default implementation loads all of them, backends able
+     * to count them without transferring them override it.
+     *
+     * @return The number of stored models.
+     */
+    default long countSync() {
+        List<T> models = findAllSync();
+        return models == null ? 0 : models.size();
+    }
+
+    /**
+     * Counts the models whose field matches the given value. The default implementation loads
+     * them, backends able to count them without transferring them override it.
+     *
+     * @param field
+     * 	The field to match.
+     * @param value
+     * 	The value the field must have.
+     *
+     * @return The number of matching models.
+     */
+    default long countSync(@NotNull String field, @NotNull String value) {
+        List<T> models = findSync(field, value);
+        if (models == null) {
+            return 0;
+        }
+
+        long count = 0;
+        for (T model : models) {
+            if (model != null) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Groups the stored models by a field and computes the aggregation over each group, without
+     * loading the models. It's only supported by backends able to compute it server side.
+     *
+     * @param groupField
+     * 	The field whose values define the groups.
+     * @param aggregation
+     * 	The aggregation computed for every group.
+     * @param valueField
+     * 	The field the aggregation is computed over, ignored by {@link Aggregation#COUNT}.
+     *
+     * @return The result of every group keyed by the string value of its group field.
+     *
+     * @throws UnsupportedOperationException if the backend can't compute aggregations.
+     */
+    default Map<String, Number> aggregateSync(@NotNull String groupField, @NotNull Aggregation aggregation,
+                                              @Nullable String valueField) {
+        throw new UnsupportedOperationException("Aggregations are not supported by " + getClass().getSimpleName());
+    }
+
     void saveSync(@NotNull T model);
 
+    /**
+     * Saves all the given models. Backends supporting bulk writes override it to save
+     * them in a single round trip.
+     *
+     * @param models
+     * 	The models to be saved.
+     */
+    default void saveBatchSync(@NotNull Collection<T> models) {
+        for (T model : models) {
+            saveSync(model);
+        }
+    }
+
+    /**
+     * Applies the updater to the stored model and saves the result. Remote backends override it to
+     * apply it atomically with optimistic concurrency: if the model is modified by someone else in
+     * the meantime, the updater is applied again over the new state, so it must be free of side
+     * effects. The default implementation is a plain read-modify-write.
+     *
+     * @param id
+     * 	The id of the model to update.
+     * @param updater
+     * 	The function returning the updated model, it must keep the same id.
+     *
+     * @return The updated model, or {@code null} if there's no model with the given id.
+     */
+    default @Nullable T updateSync(@NotNull String id, @NotNull UnaryOperator<T> updater) {
+        T model = findSync(id);
+        if (model == null) {
+            return null;
+        }
+
+        T updated = updater.apply(model);
+        saveSync(updated);
+        return updated;
+    }
+
     void deleteSync(@NotNull T model);
 
     @Nullable T deleteSync(@NotNull String id);
-}
\ No newline at end of file
+
+    /**
+     * Stops the service and releases the resources it created, it does nothing by default.
+     */
+    @Override
+    default void close() {
+    }
+}
@@ -1,11 +1,13 @@
 package dev.alexissdev.storage.builder;
 
 import dev.alexissdev.storage.ModelService;
+import dev.alexissdev.storage.dist.AsyncModelService;
 import dev.alexissdev.storage.model.Model;
 import dev.alexissdev.storage.resolve.ResolverRegistry;
 
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public abstract class LayoutModelServiceBuilder
         <T extends Model, O extends ModelServiceBuilder<T>>
@@ -13,6 +15,10 @@ public abstract class LayoutModelServiceBuilder
 
     protected final Class<T> type;
     protected Executor executor;
+    protected long timeoutMillis;
+    protected long closeTimeoutMillis = AsyncModelService.DEFAULT_CLOSE_TIMEOUT_MILLIS;
+    // whether the executor was created by this builder and must be shut down with the service
+    protected boolean ownsExecutor;
     protected ModelService<T> cacheModelService;
     protected ResolverRegistry<T> resolverRegistry;
 
@@ -26,6 +32,18 @@ public abstract class LayoutModelServiceBuilder
         return back();
     }
 
+    @Override
+    public O timeout(long timeout, TimeUnit unit) {
+        this.timeoutMillis = Math.max(0, unit.toMillis(timeout));
+        return back();
+    }
+
+    @Override
+    public O closeTimeout(long timeout, TimeUnit unit) {
+        this.closeTimeoutMillis = Math.max(0, unit.toMillis(timeout));
+        return back();
+    }
+
     @Override
     public O cachedService(ModelService<T> cachedService) {
         this.cacheModelService = cachedService;
@@ -41,6 +59,7 @@ public abstract class LayoutModelServiceBuilder
     protected void check() {
         if (executor == null) {
             executor = Executors.newSingleThreadExecutor();
+            ownsExecutor = true;
         }
         if (cacheModelService != null && resolverRegistry == null) {
             resolverRegistry = ResolverRegistry.empty();
@@ -5,11 +5,34 @@ import dev.alexissdev.storage.model.Model;
 import dev.alexissdev.storage.resolve.ResolverRegistry;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 public interface ModelServiceBuilder<T extends Model> {
 
     ModelServiceBuilder<T> executor(Executor executor);
 
+    /**
+     * Sets the default deadline for every operation of the built service. Asynchronous operations
+     * time out after it and remote backends use it as their driver timeout when supported.
+     *
+     * @param timeout
+     * 	the timeout, lower or equal than zero means no timeout.
+     * @param unit
+     * 	the unit of the timeout.
+     */
+    ModelServiceBuilder<T> timeout(long timeout, TimeUnit unit);
+
+    /**
+     * Sets the deadline used when the built service is closed to drain its pending operations
+     * and flush the cached models.
+     *
+     * @param timeout
+     * 	the close deadline.
+     * @param unit
+     * 	the unit of the timeout.
+     */
+    ModelServiceBuilder<T> closeTimeout(long timeout, TimeUnit unit);
+
     ModelServiceBuilder<T> cachedService(ModelService<T> cachedService);
 
     ModelServiceBuilder<T> resolverRegistry(ResolverRegistry<T> resolverRegistry);
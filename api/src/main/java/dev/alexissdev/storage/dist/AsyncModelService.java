@@ -1,48 +1,419 @@
 package dev.alexissdev.storage.dist;
 
 
+import dev.alexissdev.storage.Aggregation;
 import dev.alexissdev.storage.ModelService;
 import dev.alexissdev.storage.model.Model;
+import dev.alexissdev.storage.stream.CursorPublisher;
+import dev.alexissdev.storage.stream.ModelCursor;
+import dev.alexissdev.storage.util.Futures;
+import org.reactivestreams.Publisher;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+/**
+ * Base service exposing the synchronous {@link ModelService} operations as {@link CompletableFuture}s
+ * executed on the given {@link Executor}.
+ *
+ * <p>Every operation is bounded by the service timeout (if any), which can be overridden per call.
+ * Once the deadline expires the future completes exceptionally with a
+ * {@link java.util.concurrent.TimeoutException}, and cancelling a future drops the operation if it
+ * has not started yet.
+ *
+ * <p>Large result sets can be consumed incrementally through the {@link Publisher}s returned by
+ * {@link #streamAll()} and {@link #stream(String, String)}, which fetch models from the backend
+ * only as fast as the subscriber requests them.
+ *
+ * <p>Closing the service stops accepting new operations, waits for the pending ones until the close
+ * deadline, lets subclasses flush and release their resources with {@link #flush(long)} and
+ * {@link #closeResources()}, and finally shuts down the executor if it was created for this service.
+ */
 public abstract class AsyncModelService<T extends Model>
         implements ModelService<T> {
 
+    public static final long DEFAULT_CLOSE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private static final Logger LOGGER = Logger.getLogger(AsyncModelService.class.getName());
+
     protected final Executor executor;
+    protected final long timeoutMillis;
+    protected final long closeTimeoutMillis;
+    protected final boolean ownsExecutor;
+
+    // shared with the views of this service, see AsyncModelService(AsyncModelService)
+    private final Set<CompletableFuture<?>> pendingOperations;
+    private final AtomicBoolean closed;
+    private final boolean view;
 
     public AsyncModelService(Executor executor) {
+        this(executor, 0);
+    }
+
+    public AsyncModelService(Executor executor, long timeoutMillis) {
+        this(executor, timeoutMillis, DEFAULT_CLOSE_TIMEOUT_MILLIS, false);
+    }
+
+    /**
+     * @param executor
+     * 	the executor running the asynchronous operations.
+     * @param timeoutMillis
+     * 	the default deadline of every operation, zero means no deadline.
+     * @param closeTimeoutMillis
+     * 	the deadline used by {@link #close()} to drain and flush the pending work.
+     * @param ownsExecutor
+     * 	whether the executor was created for this service and must be shut down when it's closed.
+     */
+    public AsyncModelService(Executor executor, long timeoutMillis,
+                             long closeTimeoutMillis, boolean ownsExecutor) {
         this.executor = executor;
+        this.timeoutMillis = timeoutMillis;
+        this.closeTimeoutMillis = closeTimeoutMillis;
+        this.ownsExecutor = ownsExecutor;
+        this.pendingOperations = ConcurrentHashMap.newKeySet();
+        this.closed = new AtomicBoolean();
+        this.view = false;
+    }
+
+    /**
+     * Creates a view of the given service, for services offering another configuration of the same
+     * backend. The view shares the executor, the timeouts and the lifecycle of the service: it's closed
+     * with the service, which awaits the operations made through it, and closing the view does nothing.
+     *
+     * @param service
+     * 	the service the view is created from.
+     */
+    protected AsyncModelService(AsyncModelService<?> service) {
+        this.executor = service.executor;
+        this.timeoutMillis = service.timeoutMillis;
+        this.closeTimeoutMillis = service.closeTimeoutMillis;
+        this.ownsExecutor = false;
+        this.pendingOperations = service.pendingOperations;
+        this.closed = service.closed;
+        this.view = true;
     }
 
     public CompletableFuture<T> find(String id) {
-        return CompletableFuture.supplyAsync(() -> findSync(id), executor);
+        return supplyAsync(() -> findSync(id));
+    }
+
+    public CompletableFuture<T> find(String id, long timeout, TimeUnit unit) {
+        return supplyAsync(() -> findSync(id), timeout, unit);
     }
 
     public CompletableFuture<List<T>> find(String field, String value) {
-        return CompletableFuture.supplyAsync(() -> findSync(field, value), executor);
+        return supplyAsync(() -> findSync(field, value));
+    }
+
+    public CompletableFuture<List<T>> find(String field, String value, long timeout, TimeUnit unit) {
+        return supplyAsync(() -> findSync(field, value), timeout, unit);
     }
 
     public CompletableFuture<List<T>> findAll() {
-        return CompletableFuture.supplyAsync(this::findAllSync, executor);
+        return supplyAsync(this::findAllSync);
     }
 
     public CompletableFuture<List<T>> findAll(Consumer<T> postLoadAction) {
-        return CompletableFuture.supplyAsync(() -> findAllSync(postLoadAction), executor);
+        return supplyAsync(() -> findAllSync(postLoadAction));
+    }
+
+    public CompletableFuture<List<T>> findAll(Consumer<T> postLoadAction, long timeout, TimeUnit unit) {
+        return supplyAsync(() -> findAllSync(postLoadAction), timeout, unit);
+    }
+
+    public CompletableFuture<Boolean> exists(String id) {
+        return supplyAsync(() -> existsSync(id));
+    }
+
+    public CompletableFuture<Boolean> exists(String id, long timeout, TimeUnit unit) {
+        return supplyAsync(() -> existsSync(id), timeout, unit);
+    }
+
+    public CompletableFuture<Long> count() {
+        return supplyAsync(this::countSync);
+    }
+
+    public CompletableFuture<Long> count(long timeout, TimeUnit unit) {
+        return supplyAsync(this::countSync, timeout, unit);
+    }
+
+    public CompletableFuture<Long> count(String field, String value) {
+        return supplyAsync(() -> countSync(field, value));
+    }
+
+    public CompletableFuture<Long> count(String field, String value, long timeout, TimeUnit unit) {
+        return supplyAsync(() -> countSync(field, value), timeout, unit);
+    }
+
+    public CompletableFuture<Map<String, Number>> aggregate(String groupField, Aggregation aggregation,
+                                                            String valueField) {
+        return supplyAsync(() -> aggregateSync(groupField, aggregation, valueField));
+    }
+
+    public CompletableFuture<Map<String, Number>> aggregate(String groupField, Aggregation aggregation,
+                                                            String valueField, long timeout, TimeUnit unit) {
+        return supplyAsync(() -> aggregateSync(groupField, aggregation, valueField), timeout, unit);
     }
 
     public CompletableFuture<Void> save(T model) {
-        return CompletableFuture.runAsync(() -> saveSync(model), executor);
+        return runAsync(() -> saveSync(model));
+    }
+
+    public CompletableFuture<Void> save(T model, long timeout, TimeUnit unit) {
+        return runAsync(() -> saveSync(model), timeout, unit);
+    }
+
+    public CompletableFuture<T> update(String id, UnaryOperator<T> updater) {
+        return supplyAsync(() -> updateSync(id, updater));
+    }
+
+    public CompletableFuture<T> update(String id, UnaryOperator<T> updater, long timeout, TimeUnit unit) {
+        return supplyAsync(() -> updateSync(id, updater), timeout, unit);
     }
 
     public CompletableFuture<Void> delete(T model) {
-        return CompletableFuture.runAsync(() -> deleteSync(model), executor);
+        return runAsync(() -> deleteSync(model));
+    }
+
+    public CompletableFuture<Void> delete(T model, long timeout, TimeUnit unit) {
+        return runAsync(() -> deleteSync(model), timeout, unit);
     }
 
     public CompletableFuture<T> delete(String id) {
-        return CompletableFuture.supplyAsync(() -> deleteSync(id), executor);
+        return supplyAsync(() -> deleteSync(id));
+    }
+
+    public CompletableFuture<T> delete(String id, long timeout, TimeUnit unit) {
+        return supplyAsync(() -> deleteSync(id), timeout, unit);
+    }
+
+    /**
+     * Creates a publisher of all the stored models. Every subscription opens its own cursor
+     * with {@link #openCursor()}, which is only advanced on demand.
+     */
+    public Publisher<T> streamAll() {
+        return new CursorPublisher<>(this::openCursor, executor);
+    }
+
+    /**
+     * Creates a publisher of the models whose field matches the given value. Every subscription
+     * opens its own cursor with {@link #openCursor(String, String)}, which is only advanced on demand.
+     */
+    public Publisher<T> stream(String field, String value) {
+        return new CursorPublisher<>(() -> openCursor(field, value), executor);
+    }
+
+    /**
+     * Opens a cursor over all the stored models. The default implementation loads them all
+     * at once, backends able to fetch them in chunks should override it.
+     */
+    protected ModelCursor<T> openCursor() {
+        List<T> models = findAllSync();
+        return ModelCursor.of(models == null ? Collections.<T>emptyList() : models);
+    }
+
+    /**
+     * Opens a cursor over the models whose field matches the given value. The default
+     * implementation loads them all at once, backends able to fetch them in chunks
+     * should override it.
+     */
+    protected ModelCursor<T> openCursor(String field, String value) {
+        List<T> models = findSync(field, value);
+        return ModelCursor.of(models == null ? Collections.<T>emptyList() : models);
+    }
+
+    protected <R> CompletableFuture<R> supplyAsync(Supplier<R> supplier) {
+        return supplyAsync(supplier, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    protected <R> CompletableFuture<R> supplyAsync(Supplier<R> supplier, long timeout, TimeUnit unit) {
+        return track(() -> Futures.supplyAsync(supplier, executor, timeout, unit), 0, unit);
+    }
+
+    protected CompletableFuture<Void> runAsync(Runnable runnable) {
+        return runAsync(runnable, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    protected CompletableFuture<Void> runAsync(Runnable runnable, long timeout, TimeUnit unit) {
+        return supplyAsync(() -> {
+            runnable.run();
+            return null;
+        }, timeout, unit);
+    }
+
+    /**
+     * Starts an operation that is asynchronous on its own, such as a call to a non-blocking
+     * driver, and tracks it as the operations started with {@link #supplyAsync(Supplier)}: it's
+     * rejected once the service is closed, bounded by the given timeout and awaited by
+     * {@link #shutdown(long, TimeUnit)}.
+     *
+     * @param operation
+     * 	starts the operation and returns its future, it's not called if the service is closed.
+     * @param timeout
+     * 	the deadline of the operation, zero means no deadline.
+     * @param unit
+     * 	the unit of the timeout.
+     *
+     * @return the future of the operation.
+     */
+    protected <R> CompletableFuture<R> track(Supplier<CompletableFuture<R>> operation,
+                                             long timeout, TimeUnit unit) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+
+        // registered before the operation starts, so shutdown either awaits it or it's rejected
+        // here without being started
+        pendingOperations.add(future);
+        future.whenComplete((result, throwable) -> pendingOperations.remove(future));
+        if (closed.get()) {
+            future.completeExceptionally(new RejectedExecutionException("Service is closed"));
+            return future;
+        }
+
+        CompletableFuture<R> started;
+        try {
+            started = operation.get();
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        started.whenComplete((result, throwable) -> {
+            if (throwable == null) {
+                future.complete(result);
+            } else {
+                future.completeExceptionally(throwable);
+            }
+        });
+        // cancelled or timed out, which also drops it if it's still queued
+        future.whenComplete((result, throwable) -> {
+            if (throwable != null) {
+                started.cancel(false);
+            }
+        });
+
+        return Futures.withTimeout(future, timeout, unit);
+    }
+
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+    /**
+     * Closes the service using the close deadline given at construction, logging a warning
+     * if some work could not be finished.
+     */
+    @Override
+    public void close() {
+        ShutdownReport report = shutdown(closeTimeoutMillis, TimeUnit.MILLISECONDS);
+        if (!report.isComplete()) {
+            LOGGER.warning("Service closed before finishing its pending work: " + report);
+        }
+    }
+
+    /**
+     * Stops accepting new operations and gracefully closes the service within the given deadline.
+     * Operations still pending once it expires are cancelled and reported.
+     *
+     * @param timeout
+     * 	the maximum time to wait for the pending work.
+     * @param unit
+     * 	the unit of the timeout.
+     *
+     * @return what could not be finished, or an empty report if the service was already closed or
+     * is a view of another service.
+     */
+    public ShutdownReport shutdown(long timeout, TimeUnit unit) {
+        if (view || !closed.compareAndSet(false, true)) {
+            return new ShutdownReport(0, Collections.emptyList(), true);
+        }
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        CompletableFuture<?>[] pending = pendingOperations.toArray(new CompletableFuture<?>[0]);
+        awaitQuietly(CompletableFuture.allOf(pending), deadline);
+
+        int abandoned = 0;
+        for (CompletableFuture<?> future : pending) {
+            // drops the queued ones, running ones can't be interrupted
+            if (future.cancel(false)) {
+                abandoned++;
+            }
+        }
+
+        List<String> unflushedIds = flush(deadline);
+
+        try {
+            closeResources();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Could not release service resources", e);
+        }
+
+        boolean terminated = true;
+        if (ownsExecutor && executor instanceof ExecutorService) {
+            ExecutorService executorService = (ExecutorService) executor;
+            executorService.shutdown();
+            try {
+                terminated = executorService.awaitTermination(
+                        Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                terminated = false;
+            }
+        }
+
+        return new ShutdownReport(abandoned, unflushedIds, terminated);
+    }
+
+    /**
+     * Writes any state held only in memory to the backend before the service is closed. The
+     * pending operations have already been drained when it's called.
+     *
+     * @param deadlineNanos
+     * 	the {@link System#nanoTime()} before which the flush must finish.
+     *
+     * @return the ids of the models that could not be flushed.
+     */
+    protected List<String> flush(long deadlineNanos) {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Releases the resources created by this service, called once when it's closed.
+     */
+    protected void closeResources() {
+    }
+
+    /**
+     * Waits for the future until the given deadline, ignoring its result.
+     *
+     * @return whether the future completed normally before the deadline.
+     */
+    protected static boolean awaitQuietly(CompletableFuture<?> future, long deadlineNanos) {
+        try {
+            future.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException | CancellationException e) {
+            return false;
+        }
     }
 }
\ No newline at end of file
@@ -16,28 +16,37 @@ public abstract class CachedAsyncModelService<T extends Model>
         super(executor);
     }
 
+    public CachedAsyncModelService(Executor executor, long timeoutMillis) {
+        super(executor, timeoutMillis);
+    }
+
+    public CachedAsyncModelService(Executor executor, long timeoutMillis,
+                                   long closeTimeoutMillis, boolean ownsExecutor) {
+        super(executor, timeoutMillis, closeTimeoutMillis, ownsExecutor);
+    }
+
     public CompletableFuture<T> get(String id) {
-        return CompletableFuture.supplyAsync(() -> getSync(id), executor);
+        return supplyAsync(() -> getSync(id));
     }
 
     public CompletableFuture<List<T>> get(String field, String value) {
-        return CompletableFuture.supplyAsync(() -> getSync(field, value), executor);
+        return supplyAsync(() -> getSync(field, value));
     }
 
     public CompletableFuture<T> getOrFind(String id) {
-        return CompletableFuture.supplyAsync(() -> getOrFindSync(id), executor);
+        return supplyAsync(() -> getOrFindSync(id));
     }
 
     public CompletableFuture<List<T>> getOrFind(String field, String value) {
-        return CompletableFuture.supplyAsync(() -> getOrFindSync(field, value), executor);
+        return supplyAsync(() -> getOrFindSync(field, value));
     }
 
     public CompletableFuture<List<T>> getAll() {
-        return CompletableFuture.supplyAsync(this::getAllSync, executor);
+        return supplyAsync(this::getAllSync);
     }
 
     public CompletableFuture<Void> upload(T model) {
-        return CompletableFuture.runAsync(() -> uploadSync(model), executor);
+        return runAsync(() -> uploadSync(model));
     }
 
     public CompletableFuture<Void> uploadAll() {
@@ -45,7 +54,7 @@ public abstract class CachedAsyncModelService<T extends Model>
     }
 
     public CompletableFuture<Void> uploadAll(Consumer<T> preUploadAction) {
-        return CompletableFuture.runAsync(() -> uploadAllSync(preUploadAction), executor);
+        return runAsync(() -> uploadAllSync(preUploadAction));
     }
 
     public CompletableFuture<Void> saveAll() {
@@ -53,6 +62,6 @@ public abstract class CachedAsyncModelService<T extends Model>
     }
 
     public CompletableFuture<Void> saveAll(Consumer<T> preSaveAction) {
-        return CompletableFuture.runAsync(() -> saveAllSync(preSaveAction), executor);
+        return runAsync(() -> saveAllSync(preSaveAction));
     }
 }
\ No newline at end of file
@@ -3,17 +3,35 @@ package dev.alexissdev.storage.dist;
 import dev.alexissdev.storage.ModelService;
 import dev.alexissdev.storage.model.Model;
 import dev.alexissdev.storage.resolve.ResolverRegistry;
+import dev.alexissdev.storage.util.Futures;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 public abstract class CachedRemoteModelService<T extends Model>
         extends CachedAsyncModelService<T> {
 
+    /**
+     * How many models are written to the backend per bulk operation.
+     */
+    protected static final int BATCH_SIZE = 100;
+
+    /**
+     * How many batches are written to the backend at once when the service is flushed.
+     */
+    protected static final int FLUSH_PARALLELISM = 4;
+
     protected final ModelService<T> cacheModelService;
     protected final ResolverRegistry<T> resolverRegistry;
 
@@ -22,7 +40,28 @@ public abstract class CachedRemoteModelService<T extends Model>
             ModelService<T> cacheModelService,
             ResolverRegistry<T> resolverRegistry
     ) {
-        super(executor);
+        this(executor, 0, cacheModelService, resolverRegistry);
+    }
+
+    public CachedRemoteModelService(
+            Executor executor,
+            long timeoutMillis,
+            ModelService<T> cacheModelService,
+            ResolverRegistry<T> resolverRegistry
+    ) {
+        this(executor, timeoutMillis, DEFAULT_CLOSE_TIMEOUT_MILLIS, false,
+                cacheModelService, resolverRegistry);
+    }
+
+    public CachedRemoteModelService(
+            Executor executor,
+            long timeoutMillis,
+            long closeTimeoutMillis,
+            boolean ownsExecutor,
+            ModelService<T> cacheModelService,
+            ResolverRegistry<T> resolverRegistry
+    ) {
+        super(executor, timeoutMillis, closeTimeoutMillis, ownsExecutor);
         this.cacheModelService = cacheModelService;
         this.resolverRegistry = resolverRegistry;
     }
@@ -39,6 +78,14 @@ public abstract class CachedRemoteModelService<T extends Model>
         return model;
     }
 
+    /**
+     * Checks the cache first, and the backend only if the model isn't cached.
+     */
+    @Override
+    public boolean existsSync(@NotNull String id) {
+        return cacheModelService.findSync(id) != null || internalExists(id);
+    }
+
     @Override
     public @Nullable T getSync(@NotNull String id) {
         return cacheModelService.findSync(id);
@@ -100,10 +147,13 @@ public abstract class CachedRemoteModelService<T extends Model>
 
     @Override
     public void saveAllSync(Consumer<T> preSaveAction) {
-        List<T> models = getAllSync();
-        for (T model : models) {
-            preSaveAction.accept(model);
-            internalSave(model);
+        for (List<T> batch : partition(getAllSync())) {
+            if (preSaveAction != null) {
+                for (T model : batch) {
+                    preSaveAction.accept(model);
+                }
+            }
+            internalSaveAll(batch);
         }
     }
 
@@ -113,6 +163,22 @@ public abstract class CachedRemoteModelService<T extends Model>
         internalSave(model);
     }
 
+    @Override
+    public @Nullable T updateSync(@NotNull String id, @NotNull UnaryOperator<T> updater) {
+        T updated = internalUpdate(id, updater);
+
+        if (updated != null) {
+            // rebind the resolvers, the updated fields may be resolvable
+            T cached = cacheModelService.findSync(id);
+            if (cached != null) {
+                deleteInCache(cached);
+            }
+            saveInCache(updated);
+        }
+
+        return updated;
+    }
+
     @Override
     public void uploadSync(@NotNull T model) {
         deleteInCache(model);
@@ -121,10 +187,14 @@ public abstract class CachedRemoteModelService<T extends Model>
 
     @Override
     public void uploadAllSync(Consumer<T> preUploadAction) {
-        List<T> models = cacheModelService.findAllSync();
-        for (T model : models) {
-            preUploadAction.accept(model);
-            uploadSync(model);
+        for (List<T> batch : partition(cacheModelService.findAllSync())) {
+            for (T model : batch) {
+                if (preUploadAction != null) {
+                    preUploadAction.accept(model);
+                }
+                deleteInCache(model);
+            }
+            internalSaveAll(batch);
         }
     }
 
@@ -155,11 +225,104 @@ public abstract class CachedRemoteModelService<T extends Model>
         resolverRegistry.unbind(model);
     }
 
+    /**
+     * Writes every cached model to the backend in parallel batches, so a closing service doesn't
+     * upload them one by one. The batches run on threads of their own, the service executor may
+     * have a single thread.
+     */
+    @Override
+    protected List<String> flush(long deadlineNanos) {
+        List<List<T>> batches = partition(cacheModelService.findAllSync());
+        if (batches.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>(batches.size());
+        ExecutorService flushExecutor = Executors.newFixedThreadPool(
+                Math.min(batches.size(), FLUSH_PARALLELISM),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "storage-flush");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+
+        try {
+            for (List<T> batch : batches) {
+                futures.add(Futures.runAsync(() -> internalSaveAll(batch), flushExecutor, 0, TimeUnit.MILLISECONDS));
+            }
+
+            awaitQuietly(CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])), deadlineNanos);
+        } finally {
+            // running batches finish on their own, the cancelled ones below are dropped
+            flushExecutor.shutdown();
+        }
+
+        List<String> unflushedIds = new ArrayList<>();
+        for (int i = 0; i < batches.size(); i++) {
+            CompletableFuture<Void> future = futures.get(i);
+            // a batch cancelled here may still be running, so it's reported as not confirmed
+            if (future.cancel(false) || future.isCompletedExceptionally()) {
+                for (T model : batches.get(i)) {
+                    unflushedIds.add(model.getId());
+                }
+            }
+        }
+
+        return unflushedIds;
+    }
+
     protected abstract void internalSave(T model);
 
+    /**
+     * Saves a batch of models in the backend, one by one unless overridden.
+     */
+    protected void internalSaveAll(Collection<T> models) {
+        for (T model : models) {
+            internalSave(model);
+        }
+    }
+
+    /**
+     * Updates the model in the backend, with a plain read-modify-write unless overridden.
+     */
+    protected @Nullable T internalUpdate(String id, UnaryOperator<T> updater) {
+        T model = internalFind(id);
+        if (model == null) {
+            return null;
+        }
+
+        T updated = updater.apply(model);
+        internalSave(updated);
+        return updated;
+    }
+
     protected abstract void internalDelete(T model);
 
     protected abstract @Nullable T internalFind(String id);
 
     protected abstract List<T> internalFindAll();
-}
\ No newline at end of file
+
+    /**
+     * Checks whether the model exists in the backend, loading it unless overridden.
+     */
+    protected boolean internalExists(String id) {
+        return internalFind(id) != null;
+    }
+
+    /**
+     * Splits the models in batches of {@link #BATCH_SIZE}.
+     */
+    protected static <T> List<List<T>> partition(@Nullable List<T> models) {
+        if (models == null || models.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<List<T>> batches = new ArrayList<>((models.size() + BATCH_SIZE - 1) / BATCH_SIZE);
+        for (int i = 0; i < models.size(); i += BATCH_SIZE) {
+            batches.add(models.subList(i, Math.min(models.size(), i + BATCH_SIZE)));
+        }
+
+        return batches;
+    }
+}
@@ -1,13 +1,18 @@
 package dev.alexissdev.storage.dist;
 
+import dev.alexissdev.storage.Aggregation;
 import dev.alexissdev.storage.ModelService;
 import dev.alexissdev.storage.model.Model;
 import dev.alexissdev.storage.resolve.ResolverRegistry;
+import dev.alexissdev.storage.stream.ModelCursor;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executor;
+import java.util.function.UnaryOperator;
 
 public class DelegatedCachedModelService<T extends Model>
         extends CachedRemoteModelService<T> {
@@ -20,7 +25,31 @@ public class DelegatedCachedModelService<T extends Model>
             ResolverRegistry<T> resolverRegistry,
             ModelService<T> delegate
     ) {
-        super(executor, cacheModelService, resolverRegistry);
+        this(executor, 0, cacheModelService, resolverRegistry, delegate);
+    }
+
+    public DelegatedCachedModelService(
+            Executor executor,
+            long timeoutMillis,
+            ModelService<T> cacheModelService,
+            ResolverRegistry<T> resolverRegistry,
+            ModelService<T> delegate
+    ) {
+        this(executor, timeoutMillis, DEFAULT_CLOSE_TIMEOUT_MILLIS, false,
+                cacheModelService, resolverRegistry, delegate);
+    }
+
+    public DelegatedCachedModelService(
+            Executor executor,
+            long timeoutMillis,
+            long closeTimeoutMillis,
+            boolean ownsExecutor,
+            ModelService<T> cacheModelService,
+            ResolverRegistry<T> resolverRegistry,
+            ModelService<T> delegate
+    ) {
+        super(executor, timeoutMillis, closeTimeoutMillis, ownsExecutor,
+                cacheModelService, resolverRegistry);
         this.delegate = delegate;
     }
 
@@ -29,11 +58,66 @@ public class DelegatedCachedModelService<T extends Model>
         return delegate.findSync(field, value);
     }
 
+    // counts and aggregations always come from the backend, the cache may hold only some models
+    @Override
+    public long countSync() {
+        return delegate.countSync();
+    }
+
+    @Override
+    public long countSync(@NotNull String field, @NotNull String value) {
+        return delegate.countSync(field, value);
+    }
+
+    @Override
+    public Map<String, Number> aggregateSync(@NotNull String groupField, @NotNull Aggregation aggregation,
+                                             @Nullable String valueField) {
+        return delegate.aggregateSync(groupField, aggregation, valueField);
+    }
+
+    @Override
+    protected ModelCursor<T> openCursor() {
+        if (!(delegate instanceof AsyncModelService)) {
+            return super.openCursor();
+        }
+
+        ModelCursor<T> cursor = ((AsyncModelService<T>) delegate).openCursor();
+        return ModelCursor.of(cursor, model -> {
+            // add to cache, as findAllSync does
+            cacheModelService.saveSync(model);
+            return model;
+        }, cursor::close, cursor::isExhausted);
+    }
+
+    @Override
+    protected ModelCursor<T> openCursor(String field, String value) {
+        if (!(delegate instanceof AsyncModelService)) {
+            return super.openCursor(field, value);
+        }
+
+        return ((AsyncModelService<T>) delegate).openCursor(field, value);
+    }
+
     @Override
     protected void internalSave(T model) {
         delegate.saveSync(model);
     }
 
+    @Override
+    protected void internalSaveAll(Collection<T> models) {
+        delegate.saveBatchSync(models);
+    }
+
+    @Override
+    protected @Nullable T internalUpdate(String id, UnaryOperator<T> updater) {
+        return delegate.updateSync(id, updater);
+    }
+
+    @Override
+    protected void closeResources() {
+        delegate.close();
+    }
+
     @Override
     protected void internalDelete(T model) {
         delegate.deleteSync(model);
@@ -48,4 +132,9 @@ public class DelegatedCachedModelService<T extends Model>
     protected List<T> internalFindAll() {
         return delegate.findAllSync();
     }
+
+    @Override
+    protected boolean internalExists(String id) {
+        return delegate.existsSync(id);
+    }
 }
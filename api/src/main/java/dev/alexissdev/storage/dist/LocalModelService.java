@@ -33,6 +33,16 @@ public class LocalModelService<T extends Model>
         return new ArrayList<>(cache.values());
     }
 
+    @Override
+    public boolean existsSync(@NotNull String id) {
+        return cache.containsKey(id);
+    }
+
+    @Override
+    public long countSync() {
+        return cache.size();
+    }
+
     @Override
     public void saveSync(@NotNull T model) {
         cache.put(model.getId(), model);
@@ -1,17 +1,40 @@
 package dev.alexissdev.storage.dist;
 
 import dev.alexissdev.storage.model.Model;
+import dev.alexissdev.storage.resilience.RetryPolicy;
+import dev.alexissdev.storage.util.Futures;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ConcurrentModificationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 public abstract class RemoteModelService<T extends Model>
         extends AsyncModelService<T> {
 
+    // conflicts between optimistic writes clear quickly, so they're retried often and briefly
+    private static final RetryPolicy CONFLICT_RETRY_POLICY =
+            RetryPolicy.exponential(16, 1, 50, TimeUnit.MILLISECONDS);
+
     public RemoteModelService(Executor executor) {
         super(executor);
     }
 
+    public RemoteModelService(Executor executor, long timeoutMillis) {
+        super(executor, timeoutMillis);
+    }
+
+    public RemoteModelService(Executor executor, long timeoutMillis,
+                              long closeTimeoutMillis, boolean ownsExecutor) {
+        super(executor, timeoutMillis, closeTimeoutMillis, ownsExecutor);
+    }
+
+    protected RemoteModelService(RemoteModelService<?> service) {
+        super(service);
+    }
+
     @Override
     public T deleteSync(@NotNull String id) {
         T model = findSync(id);
@@ -22,4 +45,56 @@ public abstract class RemoteModelService<T extends Model>
 
         return model;
     }
-}
\ No newline at end of file
+
+    /**
+     * Waits a short jittered backoff before an optimistic write that conflicted is attempted again.
+     *
+     * @param attempt
+     * 	the attempt that conflicted, starting at 1.
+     * @param operation
+     * 	the name of the operation, for the exception message.
+     * @param id
+     * 	the id of the model being written.
+     *
+     * @throws ConcurrentModificationException if the attempts are exhausted or the thread is interrupted
+     */
+    protected static void awaitConflictRetry(int attempt, String operation, String id) {
+        if (attempt >= CONFLICT_RETRY_POLICY.getMaxAttempts()) {
+            throw conflict(attempt, operation, id);
+        }
+
+        try {
+            Thread.sleep(CONFLICT_RETRY_POLICY.delayMillis(attempt));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConcurrentModificationException("Interrupted while retrying to " + operation);
+        }
+    }
+
+    /**
+     * Asynchronous form of {@link #awaitConflictRetry(int, String, String)}, the backoff doesn't
+     * hold any thread.
+     *
+     * @param retry
+     * 	runs the next attempt once the backoff elapsed.
+     *
+     * @return the future of the next attempt, or a future completed with a
+     * {@link ConcurrentModificationException} if the attempts are exhausted.
+     */
+    protected static <R> CompletableFuture<R> retryOnConflict(int attempt, String operation, String id,
+                                                             Supplier<CompletableFuture<R>> retry) {
+        if (attempt >= CONFLICT_RETRY_POLICY.getMaxAttempts()) {
+            CompletableFuture<R> failed = new CompletableFuture<>();
+            failed.completeExceptionally(conflict(attempt, operation, id));
+            return failed;
+        }
+
+        return Futures.delay(CONFLICT_RETRY_POLICY.delayMillis(attempt), TimeUnit.MILLISECONDS)
+                .thenCompose(ignored -> retry.get());
+    }
+
+    private static ConcurrentModificationException conflict(int attempt, String operation, String id) {
+        return new ConcurrentModificationException(
+                "Could not " + operation + " model " + id + " after " + attempt + " attempts");
+    }
+}
@@ -0,0 +1,240 @@
+package dev.alexissdev.storage.dist;
+
+import dev.alexissdev.storage.Aggregation;
+import dev.alexissdev.storage.ModelService;
+import dev.alexissdev.storage.model.Model;
+import dev.alexissdev.storage.resilience.CircuitBreaker;
+import dev.alexissdev.storage.resilience.CircuitOpenException;
+import dev.alexissdev.storage.resilience.RetryPolicy;
+import dev.alexissdev.storage.stream.ModelCursor;
+import dev.alexissdev.storage.util.Futures;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Decorates a remote {@link ModelService} with a {@link CircuitBreaker} and retries.
+ *
+ * <p>Every call goes through the circuit breaker, so once the backend is failing or too slow
+ * callers fail fast with a {@link CircuitOpenException} instead of waiting for the driver timeout.
+ * Reads are idempotent and retried following the {@link RetryPolicy}, within the deadline of the
+ * current operation; writes are never retried. When a fallback service is given, reads by id are
+ * served from it while the circuit is open.
+ */
+public class ResilientModelService<T extends Model>
+        extends RemoteModelService<T> {
+
+    private final ModelService<T> delegate;
+    private final CircuitBreaker circuitBreaker;
+    private final RetryPolicy retryPolicy;
+    private final Predicate<Throwable> failurePredicate;
+    private final @Nullable ModelService<T> fallback;
+
+    protected ResilientModelService(
+            Executor executor, long timeoutMillis,
+            long closeTimeoutMillis, boolean ownsExecutor,
+            ModelService<T> delegate,
+            CircuitBreaker circuitBreaker,
+            RetryPolicy retryPolicy,
+            Predicate<Throwable> failurePredicate,
+            @Nullable ModelService<T> fallback
+    ) {
+        super(executor, timeoutMillis, closeTimeoutMillis, ownsExecutor);
+        this.delegate = delegate;
+        this.circuitBreaker = circuitBreaker;
+        this.retryPolicy = retryPolicy;
+        this.failurePredicate = failurePredicate;
+        this.fallback = fallback;
+    }
+
+    public static <T extends Model> ResilientModelServiceBuilder<T> builder(Class<T> type) {
+        return new ResilientModelServiceBuilder<>(type);
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    @Override
+    public @Nullable T findSync(@NotNull String id) {
+        return read(
+                () -> delegate.findSync(id),
+                fallback == null ? null : () -> fallback.findSync(id)
+        );
+    }
+
+    @Override
+    public @Nullable List<T> findSync(@NotNull String field, @NotNull String value) {
+        return read(
+                () -> delegate.findSync(field, value),
+                fallback == null || !field.equals(ID_FIELD) ? null : () -> {
+                    T model = fallback.findSync(value);
+                    return model == null ? Collections.emptyList() : Collections.singletonList(model);
+                }
+        );
+    }
+
+    @Override
+    public @Nullable List<T> findAllSync(@NotNull Consumer<T> postLoadAction) {
+        List<T> models = read(delegate::findAllSync, null);
+
+        if (models != null) {
+            // applied once, after the successful attempt
+            for (T model : models) {
+                postLoadAction.accept(model);
+            }
+        }
+
+        return models;
+    }
+
+    @Override
+    public boolean existsSync(@NotNull String id) {
+        return read(
+                () -> delegate.existsSync(id),
+                fallback == null ? null : () -> fallback.existsSync(id)
+        );
+    }
+
+    @Override
+    public long countSync() {
+        return read(delegate::countSync, null);
+    }
+
+    @Override
+    public long countSync(@NotNull String field, @NotNull String value) {
+        return read(() -> delegate.countSync(field, value), null);
+    }
+
+    @Override
+    public Map<String, Number> aggregateSync(@NotNull String groupField, @NotNull Aggregation aggregation,
+                                             @Nullable String valueField) {
+        return read(() -> delegate.aggregateSync(groupField, aggregation, valueField), null);
+    }
+
+    @Override
+    public void saveSync(@NotNull T model) {
+        call(() -> {
+            delegate.saveSync(model);
+            return null;
+        });
+    }
+
+    @Override
+    public void saveBatchSync(@NotNull Collection<T> models) {
+        call(() -> {
+            delegate.saveBatchSync(models);
+            return null;
+        });
+    }
+
+    @Override
+    public @Nullable T updateSync(@NotNull String id, @NotNull UnaryOperator<T> updater) {
+        return call(() -> delegate.updateSync(id, updater));
+    }
+
+    @Override
+    public void deleteSync(@NotNull T model) {
+        call(() -> {
+            delegate.deleteSync(model);
+            return null;
+        });
+    }
+
+    @Override
+    public T deleteSync(@NotNull String id) {
+        return call(() -> delegate.deleteSync(id));
+    }
+
+    @Override
+    protected ModelCursor<T> openCursor() {
+        if (!(delegate instanceof AsyncModelService)) {
+            return super.openCursor();
+        }
+
+        return call(((AsyncModelService<T>) delegate)::openCursor);
+    }
+
+    @Override
+    protected ModelCursor<T> openCursor(String field, String value) {
+        if (!(delegate instanceof AsyncModelService)) {
+            return super.openCursor(field, value);
+        }
+
+        return call(() -> ((AsyncModelService<T>) delegate).openCursor(field, value));
+    }
+
+    @Override
+    protected void closeResources() {
+        delegate.close();
+    }
+
+    private <R> R read(Supplier<R> operation, @Nullable Supplier<R> fallbackOperation) {
+        int attempt = 1;
+        while (true) {
+            try {
+                return call(operation);
+            } catch (CircuitOpenException e) {
+                if (fallbackOperation != null) {
+                    return fallbackOperation.get();
+                }
+                throw e;
+            } catch (RuntimeException e) {
+                if (!failurePredicate.test(e) || attempt >= retryPolicy.getMaxAttempts()) {
+                    throw e;
+                }
+
+                long delay = retryPolicy.delayMillis(attempt++);
+                // don't retry past the deadline of the current operation
+                if (delay >= Futures.remainingMillis(Long.MAX_VALUE)) {
+                    throw e;
+                }
+                sleep(delay, e);
+            }
+        }
+    }
+
+    private <R> R call(Supplier<R> operation) {
+        if (!circuitBreaker.tryAcquire()) {
+            throw new CircuitOpenException("Circuit is open, the backend is unavailable");
+        }
+
+        long start = System.nanoTime();
+        R result;
+        try {
+            result = operation.get();
+        } catch (RuntimeException e) {
+            if (failurePredicate.test(e)) {
+                circuitBreaker.onFailure(System.nanoTime() - start);
+            } else {
+                circuitBreaker.onSuccess(System.nanoTime() - start);
+            }
+            throw e;
+        }
+
+        circuitBreaker.onSuccess(System.nanoTime() - start);
+        return result;
+    }
+
+    private static void sleep(long millis, RuntimeException cause) {
+        if (millis <= 0) {
+            return;
+        }
+
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package dev.alexissdev.storage.dist;
+
+import dev.alexissdev.storage.ModelService;
+import dev.alexissdev.storage.builder.LayoutModelServiceBuilder;
+import dev.alexissdev.storage.model.Model;
+import dev.alexissdev.storage.resilience.CircuitBreaker;
+import dev.alexissdev.storage.resilience.RetryPolicy;
+import dev.alexissdev.storage.util.Validate;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Builder of {@link ResilientModelService}s wrapping a remote service, such as the ones built by
+ * the Mongo or Redis distributions.
+ *
+ * <p>When a cached service is set, the resilient service is wrapped by a
+ * {@link DelegatedCachedModelService} as the other builders do, and with
+ * {@link #serveCachedWhenOpen(boolean)} the same cache answers reads by id while the circuit is open.
+ *
+ * @param <T>
+ *        The type of the model handled by the built service.
+ */
+public class ResilientModelServiceBuilder<T extends Model>
+        extends LayoutModelServiceBuilder<T, ResilientModelServiceBuilder<T>> {
+
+    private ModelService<T> delegate;
+    private CircuitBreaker circuitBreaker;
+    private RetryPolicy retryPolicy = RetryPolicy.exponential(3, 50, 1000, TimeUnit.MILLISECONDS);
+    private Predicate<Throwable> failurePredicate = throwable ->
+            !(throwable instanceof IllegalArgumentException)
+                    && !(throwable instanceof UnsupportedOperationException);
+    private boolean serveCachedWhenOpen;
+
+    protected ResilientModelServiceBuilder(Class<T> type) {
+        super(type);
+    }
+
+    public ResilientModelServiceBuilder<T> delegate(ModelService<T> delegate) {
+        this.delegate = delegate;
+        return back();
+    }
+
+    public ResilientModelServiceBuilder<T> circuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+        return back();
+    }
+
+    /**
+     * Sets how reads are retried, {@link RetryPolicy#none()} disables retries.
+     */
+    public ResilientModelServiceBuilder<T> retryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+        return back();
+    }
+
+    /**
+     * Sets which exceptions are backend failures. They're counted by the circuit breaker and
+     * retried on reads, any other exception is propagated right away. By default everything but
+     * {@link IllegalArgumentException} and {@link UnsupportedOperationException} is a failure.
+     */
+    public ResilientModelServiceBuilder<T> failurePredicate(Predicate<Throwable> failurePredicate) {
+        this.failurePredicate = failurePredicate;
+        return back();
+    }
+
+    public ResilientModelServiceBuilder<T> serveCachedWhenOpen(boolean serveCachedWhenOpen) {
+        this.serveCachedWhenOpen = serveCachedWhenOpen;
+        return back();
+    }
+
+    @Override
+    protected ResilientModelServiceBuilder<T> back() {
+        return this;
+    }
+
+    @Override
+    public ModelService<T> build() {
+        check();
+        Validate.notNull(delegate, "delegate");
+        Validate.notNull(retryPolicy, "retryPolicy");
+        Validate.notNull(failurePredicate, "failurePredicate");
+        Validate.state(!serveCachedWhenOpen || cacheModelService != null,
+                "serveCachedWhenOpen requires a cached service");
+        if (circuitBreaker == null) {
+            circuitBreaker = CircuitBreaker.builder().build();
+        }
+
+        ResilientModelService<T> modelService = new ResilientModelService<>(
+                executor, timeoutMillis, closeTimeoutMillis,
+                ownsExecutor && cacheModelService == null,
+                delegate, circuitBreaker, retryPolicy, failurePredicate,
+                serveCachedWhenOpen ? cacheModelService : null
+        );
+        if (cacheModelService == null) {
+            return modelService;
+        }
+
+        return new DelegatedCachedModelService<>(
+                executor, timeoutMillis, closeTimeoutMillis, ownsExecutor,
+                cacheModelService, resolverRegistry, modelService
+        );
+    }
+}
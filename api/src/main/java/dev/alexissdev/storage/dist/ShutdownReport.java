@@ -0,0 +1,56 @@
+package dev.alexissdev.storage.dist;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Describes what a service could not finish before its close deadline expired.
+ */
+public class ShutdownReport {
+
+    private final int abandonedOperations;
+    private final List<String> unflushedIds;
+    private final boolean executorTerminated;
+
+    public ShutdownReport(int abandonedOperations, List<String> unflushedIds, boolean executorTerminated) {
+        this.abandonedOperations = abandonedOperations;
+        this.unflushedIds = Collections.unmodifiableList(unflushedIds);
+        this.executorTerminated = executorTerminated;
+    }
+
+    /**
+     * @return the number of operations still queued or running when the deadline expired, their
+     * futures have been cancelled.
+     */
+    public int getAbandonedOperations() {
+        return abandonedOperations;
+    }
+
+    /**
+     * @return the ids of the cached models that could not be written to the backend.
+     */
+    public List<String> getUnflushedIds() {
+        return unflushedIds;
+    }
+
+    /**
+     * @return whether the executor owned by the service terminated, {@code true} when the service
+     * doesn't own its executor.
+     */
+    public boolean isExecutorTerminated() {
+        return executorTerminated;
+    }
+
+    public boolean isComplete() {
+        return abandonedOperations == 0 && unflushedIds.isEmpty() && executorTerminated;
+    }
+
+    @Override
+    public String toString() {
+        return "ShutdownReport{" +
+                "abandonedOperations=" + abandonedOperations +
+                ", unflushedIds=" + unflushedIds +
+                ", executorTerminated=" + executorTerminated +
+                '}';
+    }
+}
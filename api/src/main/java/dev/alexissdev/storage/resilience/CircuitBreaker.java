@@ -0,0 +1,224 @@
+package dev.alexissdev.storage.resilience;
+
+import dev.alexissdev.storage.util.Validate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A count-based circuit breaker. It records the outcome and duration of the last calls in a
+ * sliding window and opens when the rate of failed or slow calls crosses its threshold, making
+ * callers fail fast instead of waiting on a degraded backend.
+ *
+ * <p>After the open duration a limited number of probe calls are permitted: the circuit closes
+ * again if all of them succeed in time, and re-opens as soon as one of them fails or is slow.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long slowCallThresholdNanos;
+    private final double slowCallRateThreshold;
+    private final long openDurationNanos;
+    private final int halfOpenCalls;
+
+    // ring buffers with the outcome of the last calls
+    private final boolean[] failures;
+    private final boolean[] slowCalls;
+    private int index;
+    private int recordedCalls;
+    private int failureCount;
+    private int slowCallCount;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+
+    protected CircuitBreaker(Builder builder) {
+        this.windowSize = builder.windowSize;
+        this.minimumCalls = builder.minimumCalls;
+        this.failureRateThreshold = builder.failureRateThreshold;
+        this.slowCallThresholdNanos = builder.slowCallThresholdNanos;
+        this.slowCallRateThreshold = builder.slowCallRateThreshold;
+        this.openDurationNanos = builder.openDurationNanos;
+        this.halfOpenCalls = builder.halfOpenCalls;
+        this.failures = new boolean[windowSize];
+        this.slowCalls = new boolean[windowSize];
+    }
+
+    /**
+     * Asks permission to perform a call.
+     *
+     * @return {@code false} if the circuit is open and the call must fail fast.
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openDurationNanos) {
+                return false;
+            }
+
+            state = State.HALF_OPEN;
+            halfOpenPermits = halfOpenCalls;
+            halfOpenSuccesses = 0;
+        }
+
+        if (state == State.HALF_OPEN) {
+            if (halfOpenPermits == 0) {
+                return false;
+            }
+            halfOpenPermits--;
+        }
+
+        return true;
+    }
+
+    public synchronized void onSuccess(long durationNanos) {
+        record(false, durationNanos);
+    }
+
+    public synchronized void onFailure(long durationNanos) {
+        record(true, durationNanos);
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void record(boolean failed, long durationNanos) {
+        boolean slow = durationNanos >= slowCallThresholdNanos;
+
+        if (state == State.HALF_OPEN) {
+            if (failed || slow) {
+                transition(State.OPEN);
+            } else if (++halfOpenSuccesses >= halfOpenCalls) {
+                transition(State.CLOSED);
+            }
+            return;
+        }
+
+        if (state == State.OPEN) {
+            // a call permitted before the circuit opened
+            return;
+        }
+
+        if (recordedCalls == windowSize) {
+            if (failures[index]) {
+                failureCount--;
+            }
+            if (slowCalls[index]) {
+                slowCallCount--;
+            }
+        } else {
+            recordedCalls++;
+        }
+
+        failures[index] = failed;
+        slowCalls[index] = slow;
+        if (failed) {
+            failureCount++;
+        }
+        if (slow) {
+            slowCallCount++;
+        }
+        index = (index + 1) % windowSize;
+
+        if (recordedCalls >= minimumCalls
+                && (failureCount >= failureRateThreshold * recordedCalls
+                || slowCallCount >= slowCallRateThreshold * recordedCalls)) {
+            transition(State.OPEN);
+        }
+    }
+
+    private void transition(State state) {
+        this.state = state;
+        if (state == State.OPEN) {
+            openedAt = System.nanoTime();
+        }
+
+        index = 0;
+        recordedCalls = 0;
+        failureCount = 0;
+        slowCallCount = 0;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private int windowSize = 50;
+        private int minimumCalls = 10;
+        private double failureRateThreshold = 0.5;
+        private long slowCallThresholdNanos = TimeUnit.SECONDS.toNanos(2);
+        private double slowCallRateThreshold = 0.8;
+        private long openDurationNanos = TimeUnit.SECONDS.toNanos(10);
+        private int halfOpenCalls = 3;
+
+        protected Builder() {
+        }
+
+        /**
+         * Sets how many of the last calls are considered to compute the failure and slow call rates.
+         */
+        public Builder windowSize(int windowSize) {
+            this.windowSize = windowSize;
+            return this;
+        }
+
+        /**
+         * Sets how many calls must be recorded before the circuit can open.
+         */
+        public Builder minimumCalls(int minimumCalls) {
+            this.minimumCalls = minimumCalls;
+            return this;
+        }
+
+        /**
+         * Sets the rate of failed calls, between 0 and 1, that opens the circuit.
+         */
+        public Builder failureRateThreshold(double failureRateThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+            return this;
+        }
+
+        /**
+         * Sets the duration from which a call is considered slow, and the rate of slow calls,
+         * between 0 and 1, that opens the circuit.
+         */
+        public Builder slowCallThreshold(long duration, TimeUnit unit, double rateThreshold) {
+            this.slowCallThresholdNanos = unit.toNanos(duration);
+            this.slowCallRateThreshold = rateThreshold;
+            return this;
+        }
+
+        /**
+         * Sets how long the circuit stays open before probe calls are permitted.
+         */
+        public Builder openDuration(long duration, TimeUnit unit) {
+            this.openDurationNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Sets how many probe calls must succeed to close the circuit again.
+         */
+        public Builder halfOpenCalls(int halfOpenCalls) {
+            this.halfOpenCalls = halfOpenCalls;
+            return this;
+        }
+
+        public CircuitBreaker build() {
+            Validate.state(windowSize > 0, "windowSize must be positive");
+            Validate.state(minimumCalls > 0 && minimumCalls <= windowSize,
+                    "minimumCalls must be between 1 and windowSize");
+            Validate.state(halfOpenCalls > 0, "halfOpenCalls must be positive");
+            return new CircuitBreaker(this);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package dev.alexissdev.storage.resilience;
+
+/**
+ * Thrown when a call is rejected without reaching the backend because its circuit is open.
+ */
+public class CircuitOpenException
+        extends RuntimeException {
+
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+}
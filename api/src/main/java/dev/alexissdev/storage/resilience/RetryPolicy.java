@@ -0,0 +1,55 @@
+package dev.alexissdev.storage.resilience;
+
+import dev.alexissdev.storage.util.Validate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exponential backoff with full jitter: before the attempt {@code n} the caller waits a random
+ * delay between zero and {@code min(maxDelay, baseDelay * 2^(n - 1))}, so clients retrying
+ * after the same outage don't hit the backend in synchronized waves.
+ */
+public class RetryPolicy {
+
+    private static final RetryPolicy NONE = new RetryPolicy(1, 0, 0);
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    private RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @param attempt
+     * 	the attempt that failed, starting at 1.
+     *
+     * @return the random delay to wait before the next attempt.
+     */
+    public long delayMillis(int attempt) {
+        if (baseDelayMillis <= 0) {
+            return 0;
+        }
+
+        int shift = Math.min(attempt - 1, 30);
+        long ceiling = Math.min(maxDelayMillis, baseDelayMillis << shift);
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    public static RetryPolicy none() {
+        return NONE;
+    }
+
+    public static RetryPolicy exponential(int maxAttempts, long baseDelay, long maxDelay, TimeUnit unit) {
+        Validate.state(maxAttempts > 0, "maxAttempts must be positive");
+        return new RetryPolicy(maxAttempts, unit.toMillis(baseDelay), unit.toMillis(maxDelay));
+    }
+}
@@ -7,6 +7,7 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 
 public class ResolverRegistry<T extends Model> {
 
@@ -36,6 +37,13 @@ public class ResolverRegistry<T extends Model> {
         return resolvers.get(field);
     }
 
+    /**
+     * @return the names of the fields with a registered resolver.
+     */
+    public @NotNull Set<String> getFields() {
+        return Collections.unmodifiableSet(resolvers.keySet());
+    }
+
     public @Nullable Iterable<String> resolve(@NotNull String field, @NotNull String value) {
         RelationalResolver<T> resolver = getResolver(field);
         if (resolver == null) {
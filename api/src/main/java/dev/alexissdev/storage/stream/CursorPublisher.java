@@ -0,0 +1,191 @@
+package dev.alexissdev.storage.stream;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A cold {@link Publisher} that emits the elements of a {@link ModelCursor}.
+ *
+ * <p>Every subscriber gets its own cursor, opened on the executor when the first element is
+ * requested. Elements are pulled from the cursor only while the subscriber has outstanding demand,
+ * so a slow subscriber throttles the backend instead of having the whole result set buffered
+ * in memory. The cursor is closed on completion, error or cancellation.
+ *
+ * @param <T>
+ * 	the type of the emitted elements
+ */
+public class CursorPublisher<T>
+        implements Publisher<T> {
+
+    private final Supplier<ModelCursor<T>> cursorFactory;
+    private final Executor executor;
+
+    public CursorPublisher(Supplier<ModelCursor<T>> cursorFactory, Executor executor) {
+        this.cursorFactory = cursorFactory;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        subscriber.onSubscribe(new CursorSubscription<>(subscriber, cursorFactory, executor));
+    }
+
+    private static class CursorSubscription<T>
+            implements Subscription, Runnable {
+
+        private final Subscriber<? super T> subscriber;
+        private final Supplier<ModelCursor<T>> cursorFactory;
+        private final Executor executor;
+
+        private final AtomicLong demand = new AtomicLong();
+        // serializes the drain loop, only one executor task emits at the same time
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable error;
+
+        // only accessed from the drain loop
+        private ModelCursor<T> cursor;
+        private boolean done;
+
+        private CursorSubscription(
+                Subscriber<? super T> subscriber,
+                Supplier<ModelCursor<T>> cursorFactory,
+                Executor executor
+        ) {
+            this.subscriber = subscriber;
+            this.cursorFactory = cursorFactory;
+            this.executor = executor;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                // signalled from the drain loop so it never overlaps with onNext
+                error = new IllegalArgumentException(
+                        "Non-positive request: " + n + " (see reactive streams rule 3.9)");
+                schedule();
+                return;
+            }
+
+            long current;
+            long next;
+            do {
+                current = demand.get();
+                if (current == Long.MAX_VALUE) {
+                    return;
+                }
+                next = current + n;
+                if (next < 0) {
+                    next = Long.MAX_VALUE;
+                }
+            } while (!demand.compareAndSet(current, next));
+
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+
+            try {
+                executor.execute(this);
+            } catch (Throwable throwable) {
+                wip.set(0);
+                if (!cancelled) {
+                    cancelled = true;
+                    subscriber.onError(throwable);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                drain();
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drain() {
+            if (done) {
+                return;
+            }
+
+            if (cancelled) {
+                finish();
+                return;
+            }
+
+            if (error != null) {
+                finish();
+                subscriber.onError(error);
+                return;
+            }
+
+            try {
+                if (cursor == null) {
+                    cursor = cursorFactory.get();
+                }
+
+                long requested = demand.get();
+                long emitted = 0;
+
+                while (emitted != requested) {
+                    if (cancelled || error != null) {
+                        // handled on the next pass of the drain loop
+                        return;
+                    }
+
+                    if (!cursor.hasNext()) {
+                        finish();
+                        subscriber.onComplete();
+                        return;
+                    }
+
+                    subscriber.onNext(cursor.next());
+                    emitted++;
+                }
+
+                // completion needs no demand (rule 1.4), so a subscriber that requested exactly
+                // the remaining elements is completed without requesting again, but only if the
+                // cursor knows it without fetching ahead, otherwise on the next request
+                if (!cancelled && error == null && cursor.isExhausted()) {
+                    finish();
+                    subscriber.onComplete();
+                    return;
+                }
+
+                if (requested != Long.MAX_VALUE) {
+                    demand.addAndGet(-emitted);
+                }
+            } catch (Throwable throwable) {
+                finish();
+                subscriber.onError(throwable);
+            }
+        }
+
+        private void finish() {
+            done = true;
+            if (cursor != null) {
+                cursor.close();
+                cursor = null;
+            }
+        }
+    }
+}
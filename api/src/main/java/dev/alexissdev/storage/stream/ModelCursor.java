@@ -0,0 +1,101 @@
+package dev.alexissdev.storage.stream;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/**
+ * A closeable iterator over models fetched lazily from a backend, such as a database cursor
+ * or a directory listing. Calls to {@link #hasNext()} may block while the next chunk is fetched.
+ *
+ * @param <T>
+ * 	the type of the iterated elements
+ */
+public interface ModelCursor<T>
+        extends Iterator<T>, Closeable {
+
+    /**
+     * Releases the backend resources held by this cursor, it can be called more than once.
+     */
+    @Override
+    void close();
+
+    /**
+     * Returns whether this cursor knows, without fetching anything, that it has no more elements.
+     * It's {@code false} whenever that can't be told without a round trip, {@link #hasNext()} is
+     * the one to call to find it out.
+     */
+    default boolean isExhausted() {
+        return false;
+    }
+
+    static <T> ModelCursor<T> of(Iterator<T> iterator) {
+        return of(iterator, Function.identity(), () -> { });
+    }
+
+    /**
+     * Creates a cursor over models already in memory, which knows when it's exhausted.
+     */
+    static <T> ModelCursor<T> of(List<T> models) {
+        Iterator<T> iterator = models.iterator();
+        return of(iterator, Function.identity(), () -> { }, () -> !iterator.hasNext());
+    }
+
+    /**
+     * Creates a cursor that maps the elements of the given iterator.
+     *
+     * @param iterator
+     * 	the source iterator.
+     * @param mapper
+     * 	the function applied to every element when it's iterated.
+     * @param onClose
+     * 	the action releasing the source resources.
+     */
+    static <R, T> ModelCursor<T> of(
+            Iterator<R> iterator,
+            Function<? super R, ? extends T> mapper,
+            Runnable onClose
+    ) {
+        return of(iterator, mapper, onClose, () -> false);
+    }
+
+    /**
+     * Creates a cursor that maps the elements of the given iterator, and tells whether the source
+     * is exhausted with the given check.
+     *
+     * @param exhausted
+     * 	whether the source has no more elements, it must not fetch anything.
+     *
+     * @see #of(Iterator, Function, Runnable)
+     */
+    static <R, T> ModelCursor<T> of(
+            Iterator<R> iterator,
+            Function<? super R, ? extends T> mapper,
+            Runnable onClose,
+            BooleanSupplier exhausted
+    ) {
+        return new ModelCursor<T>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return mapper.apply(iterator.next());
+            }
+
+            @Override
+            public void close() {
+                onClose.run();
+            }
+
+            @Override
+            public boolean isExhausted() {
+                return exhausted.getAsBoolean();
+            }
+        };
+    }
+}
@@ -0,0 +1,39 @@
+package dev.alexissdev.storage.stream;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A page of models fetched with keyset pagination, along with the token to resume from
+ * right after it.
+ *
+ * <p>Tokens are opaque to the caller and stay valid while models are added or removed,
+ * unlike offsets.
+ */
+public class Page<T> {
+
+    private final List<T> models;
+    private final @Nullable String nextToken;
+
+    public Page(List<T> models, @Nullable String nextToken) {
+        this.models = Collections.unmodifiableList(models);
+        this.nextToken = nextToken;
+    }
+
+    public List<T> getModels() {
+        return models;
+    }
+
+    /**
+     * @return the token to fetch the next page, or {@code null} if this is the last one.
+     */
+    public @Nullable String getNextToken() {
+        return nextToken;
+    }
+
+    public boolean hasNext() {
+        return nextToken != null;
+    }
+}
@@ -0,0 +1,132 @@
+package dev.alexissdev.storage.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Helpers to run storage operations asynchronously with a deadline.
+ *
+ * <p>Futures created here complete exceptionally with a {@link TimeoutException} once their
+ * deadline expires, and tasks whose future was cancelled or timed out before an executor thread
+ * picked them up are dropped instead of executed. While a task runs, its remaining time can be
+ * queried with {@link #remainingMillis(long)} so it can be passed down to driver timeouts.
+ */
+public final class Futures {
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "storage-deadline-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    private Futures() {
+        throw new UnsupportedOperationException();
+    }
+
+    public static <T> CompletableFuture<T> supplyAsync(
+            Supplier<T> supplier, Executor executor,
+            long timeout, TimeUnit unit
+    ) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        long deadline = timeout > 0 ? System.nanoTime() + unit.toNanos(timeout) : 0;
+
+        try {
+            executor.execute(() -> {
+                // cancelled or timed out while queued, don't waste the thread
+                if (future.isDone()) {
+                    return;
+                }
+
+                if (deadline != 0) {
+                    DEADLINE.set(deadline);
+                }
+                try {
+                    future.complete(supplier.get());
+                } catch (Throwable throwable) {
+                    future.completeExceptionally(throwable);
+                } finally {
+                    DEADLINE.remove();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        return withTimeout(future, timeout, unit);
+    }
+
+    public static CompletableFuture<Void> runAsync(
+            Runnable runnable, Executor executor,
+            long timeout, TimeUnit unit
+    ) {
+        return supplyAsync(() -> {
+            runnable.run();
+            return null;
+        }, executor, timeout, unit);
+    }
+
+    /**
+     * Completes the given future exceptionally with a {@link TimeoutException} if it has not
+     * completed after the given timeout. A timeout lower or equal than zero means no timeout.
+     *
+     * @return the same future, for chaining
+     */
+    public static <T> CompletableFuture<T> withTimeout(
+            CompletableFuture<T> future,
+            long timeout, TimeUnit unit
+    ) {
+        if (timeout <= 0 || future.isDone()) {
+            return future;
+        }
+
+        ScheduledFuture<?> timeoutTask = TIMER.schedule(
+                () -> future.completeExceptionally(new TimeoutException(
+                        "Operation timed out after " + timeout + " " + unit.name().toLowerCase())),
+                timeout, unit
+        );
+        future.whenComplete((result, throwable) -> timeoutTask.cancel(false));
+        return future;
+    }
+
+    /**
+     * Returns a future completed after the given delay, without holding any thread meanwhile.
+     */
+    public static CompletableFuture<Void> delay(long delay, TimeUnit unit) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (delay <= 0) {
+            future.complete(null);
+            return future;
+        }
+
+        TIMER.schedule(() -> future.complete(null), delay, unit);
+        return future;
+    }
+
+    /**
+     * Returns the time left before the deadline of the operation running in the current thread.
+     *
+     * @param fallback
+     * 	the value returned when the current thread is not running an operation with a deadline
+     *
+     * @return the remaining milliseconds (at least 1), or {@code fallback} when there's no deadline
+     */
+    public static long remainingMillis(long fallback) {
+        Long deadline = DEADLINE.get();
+        if (deadline == null) {
+            return fallback;
+        }
+
+        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        return Math.max(1, remaining);
+    }
+}
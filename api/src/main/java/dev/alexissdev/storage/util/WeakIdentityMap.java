@@ -0,0 +1,73 @@
+package dev.alexissdev.storage.util;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe map whose keys are compared by identity and weakly referenced, so two equal
+ * instances have their own entries and an entry is dropped once its key is no longer used.
+ *
+ * <p>Entries of collected keys are purged on every access.
+ */
+public final class WeakIdentityMap<K, V> {
+
+    private final Map<Key<K>, V> entries = new ConcurrentHashMap<>();
+    private final ReferenceQueue<K> queue = new ReferenceQueue<>();
+
+    public @Nullable V get(K key) {
+        purge();
+        return entries.get(new Key<>(key, null));
+    }
+
+    public void put(K key, V value) {
+        purge();
+        entries.put(new Key<>(key, queue), value);
+    }
+
+    public @Nullable V remove(K key) {
+        purge();
+        return entries.remove(new Key<>(key, null));
+    }
+
+    private void purge() {
+        Reference<? extends K> reference;
+        while ((reference = queue.poll()) != null) {
+            entries.remove(reference);
+        }
+    }
+
+    private static class Key<K>
+            extends WeakReference<K> {
+
+        private final int hash;
+
+        private Key(K key, @Nullable ReferenceQueue<K> queue) {
+            super(key, queue);
+            this.hash = System.identityHashCode(key);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other == this) {
+                return true;
+            }
+            if (!(other instanceof Key)) {
+                return false;
+            }
+
+            // a collected key only equals its own entry, so it can still be removed
+            Object key = get();
+            return key != null && key == ((Key<?>) other).get();
+        }
+    }
+}
@@ -6,12 +6,17 @@ import dev.alexissdev.storage.bukkit.codec.YamlModelParser;
 import dev.alexissdev.storage.bukkit.codec.YamlReader;
 import dev.alexissdev.storage.dist.RemoteModelService;
 import dev.alexissdev.storage.model.Model;
+import dev.alexissdev.storage.stream.ModelCursor;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -25,10 +30,11 @@ public class YamlModelService<T extends Model & YamlCodec>
     private final YamlModelParser<T> modelParser;
 
     protected YamlModelService(
-            Executor executor, File folder,
-            YamlModelParser<T> modelParser
+            Executor executor, long timeoutMillis,
+            long closeTimeoutMillis, boolean ownsExecutor,
+            File folder, YamlModelParser<T> modelParser
     ) {
-        super(executor);
+        super(executor, timeoutMillis, closeTimeoutMillis, ownsExecutor);
         this.folder = folder;
         this.modelParser = modelParser;
     }
@@ -80,6 +86,24 @@ public class YamlModelService<T extends Model & YamlCodec>
         return models;
     }
 
+    @Override
+    protected ModelCursor<T> openCursor() {
+        DirectoryStream<Path> stream;
+        try {
+            // lists the folder lazily instead of loading every file name at once
+            stream = Files.newDirectoryStream(folder.toPath(), "*.yml");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not list models folder", e);
+        }
+
+        return ModelCursor.of(stream.iterator(), path -> parse(path.toFile()), () -> {
+            try {
+                stream.close();
+            } catch (IOException ignored) {
+            }
+        });
+    }
+
     private File createFile(String id, boolean create) {
         File file = new File(folder, id + ".yml");
         if (create && !file.exists()) {
@@ -73,12 +73,19 @@ public class YamlModelServiceBuilder<T extends Model & YamlCodec>
             Validate.state(folder.mkdirs(), "Failed to create folder: " + folder.getName());
         }
 
-        YamlModelService<T> modelService = new YamlModelService<>(executor, folder, modelParser);
+        YamlModelService<T> modelService = new YamlModelService<>(
+                executor, timeoutMillis, closeTimeoutMillis,
+                ownsExecutor && cacheModelService == null,
+                folder, modelParser
+        );
 
         if (cacheModelService == null) {
             return modelService;
         }
 
-        return new DelegatedCachedModelService<>(executor, cacheModelService, resolverRegistry, modelService);
+        return new DelegatedCachedModelService<>(
+                executor, timeoutMillis, closeTimeoutMillis, ownsExecutor,
+                cacheModelService, resolverRegistry, modelService
+        );
     }
 }
\ No newline at end of file
@@ -0,0 +1,79 @@
+package dev.alexissdev.storage.mongo;
+
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BsonField;
+import dev.alexissdev.storage.Aggregation;
+import dev.alexissdev.storage.util.Validate;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the pipelines computing an {@link Aggregation} server side, shared by the blocking
+ * and the reactive services.
+ */
+public final class AggregationPipelines {
+
+    private static final String VALUE_FIELD = "value";
+
+    private AggregationPipelines() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Creates a single {@code $group} stage grouping the documents by the group field, so only
+     * one small document per group is sent back.
+     *
+     * @throws IllegalArgumentException if the aggregation needs a value field and it's missing.
+     */
+    public static List<Bson> group(String groupField, Aggregation aggregation, @Nullable String valueField) {
+        Validate.notNull(groupField, "groupField");
+        Validate.notNull(aggregation, "aggregation");
+        if (aggregation.isValueRequired()) {
+            Validate.notNull(valueField, "valueField is required by " + aggregation);
+        }
+
+        return Collections.singletonList(Aggregates.group("$" + groupField, accumulator(aggregation, valueField)));
+    }
+
+    /**
+     * Reads the groups returned by a pipeline created with {@link #group(String, Aggregation, String)},
+     * keyed by the string value of their group field.
+     */
+    public static Map<String, Number> results(Iterable<Document> groups) {
+        Map<String, Number> results = new LinkedHashMap<>();
+        for (Document group : groups) {
+            Object value = group.get(VALUE_FIELD);
+            // groups with only non numeric values have no sum, average or bounds
+            if (value instanceof Number) {
+                results.put(String.valueOf(group.get("_id")), (Number) value);
+            }
+        }
+
+        return results;
+    }
+
+    private static BsonField accumulator(Aggregation aggregation, @Nullable String valueField) {
+        String expression = "$" + valueField;
+        switch (aggregation) {
+            case COUNT:
+                return Accumulators.sum(VALUE_FIELD, 1);
+            case SUM:
+                return Accumulators.sum(VALUE_FIELD, expression);
+            case AVG:
+                return Accumulators.avg(VALUE_FIELD, expression);
+            case MIN:
+                return Accumulators.min(VALUE_FIELD, expression);
+            case MAX:
+                return Accumulators.max(VALUE_FIELD, expression);
+            default:
+                throw new IllegalArgumentException("Unknown aggregation " + aggregation);
+        }
+    }
+}
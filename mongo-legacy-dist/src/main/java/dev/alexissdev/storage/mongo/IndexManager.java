@@ -0,0 +1,111 @@
+package dev.alexissdev.storage.mongo;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import org.bson.Document;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps track of the indexed fields of a collection, creating the declared indexes and warning
+ * once per field when a query filters by a field without index.
+ *
+ * <p>A field counts as indexed when it's the first key of an index, so it can be used by
+ * equality queries on that field.
+ */
+public class IndexManager {
+
+    private static final Logger LOGGER = Logger.getLogger(IndexManager.class.getName());
+
+    private final MongoCollection<Document> collection;
+    private final Set<String> indexedFields = ConcurrentHashMap.newKeySet();
+    private final Set<String> warnedFields = ConcurrentHashMap.newKeySet();
+
+    public IndexManager(MongoCollection<Document> collection) {
+        this.collection = collection;
+        indexedFields.add("_id");
+    }
+
+    /**
+     * Creates an ascending index for every given field and learns the existing indexes, on a new
+     * daemon thread, so the operations of the service don't wait for it. Creating an index that
+     * already exists does nothing, so it's safe to call on every start.
+     *
+     * @param fields
+     * 	the fields to index.
+     */
+    public void ensureIndexes(Collection<String> fields) {
+        indexedFields.addAll(fields);
+
+        inBackground(() -> {
+            for (String field : fields) {
+                try {
+                    collection.createIndex(Indexes.ascending(field), new IndexOptions().background(true));
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Could not create the index of " + field, e);
+                }
+            }
+
+            try {
+                for (Document index : collection.listIndexes()) {
+                    Document key = index.get("key", Document.class);
+                    if (key != null && !key.isEmpty()) {
+                        indexedFields.add(key.keySet().iterator().next());
+                    }
+                }
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Could not list the indexes of " + collection.getNamespace().getFullName(), e);
+            }
+        });
+    }
+
+    /**
+     * Creates a TTL index on a date field on a new daemon thread, so the server removes every
+     * document once the date of that field has passed. The TTL monitor runs once a minute, so
+     * documents may outlive their date by that much.
+     *
+     * @param field
+     * 	the date field holding the expiry of the documents.
+     */
+    public void ensureTtlIndex(String field) {
+        indexedFields.add(field);
+
+        inBackground(() -> {
+            try {
+                collection.createIndex(Indexes.ascending(field),
+                        new IndexOptions().expireAfter(0L, TimeUnit.SECONDS).background(true));
+            } catch (RuntimeException e) {
+                // an existing index on the field without TTL conflicts with it
+                LOGGER.log(Level.WARNING, "Could not create the TTL index of " + field, e);
+            }
+        });
+    }
+
+    // not on the service executor, a single thread there would hold every operation and the shutdown
+    // until the server builds the index
+    private void inBackground(Runnable task) {
+        Thread thread = new Thread(task, "storage-index-" + collection.getNamespace().getFullName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public boolean isIndexed(String field) {
+        return indexedFields.contains(field);
+    }
+
+    /**
+     * Logs a warning the first time a query filters by the given field without index.
+     */
+    public void checkQuery(String field) {
+        if (!isIndexed(field) && warnedFields.add(field)) {
+            LOGGER.warning("Querying " + collection.getNamespace().getFullName() + " by the field " + field
+                    + " without index, it scans the whole collection");
+        }
+    }
+}
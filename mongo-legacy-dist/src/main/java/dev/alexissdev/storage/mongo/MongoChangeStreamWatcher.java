@@ -0,0 +1,253 @@
+package dev.alexissdev.storage.mongo;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import dev.alexissdev.storage.dist.CachedRemoteModelService;
+import dev.alexissdev.storage.model.Model;
+import dev.alexissdev.storage.mongo.codec.DocumentCodec;
+import dev.alexissdev.storage.mongo.codec.DocumentReader;
+import dev.alexissdev.storage.mongo.codec.MongoModelParser;
+import dev.alexissdev.storage.resilience.RetryPolicy;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the cache of a {@link CachedRemoteModelService} coherent with the writes made by other
+ * nodes to its Mongo collection, following the collection change stream.
+ *
+ * <p>Only the models already cached are refreshed, replaced by the changed version and rebound
+ * in the {@code ResolverRegistry}, and removed from the cache when they're deleted, so every node
+ * keeps caching just the models it uses. A change matching the cached model, such as the echo of
+ * a write of this node, is ignored. Local changes of a cached model not saved yet are lost when
+ * another node writes it.
+ *
+ * <p>The resume token is saved in the {@link ResumeTokenStore} whenever the stream is idle and
+ * every {@value #TOKEN_SAVE_INTERVAL} changes. If the stream can't be resumed anymore, the changes
+ * in between are unknown, so the whole cache is invalidated. Change streams require a replica set,
+ * a single node one is enough for local development.
+ */
+public class MongoChangeStreamWatcher<T extends Model & DocumentCodec>
+        implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(MongoChangeStreamWatcher.class.getName());
+
+    private static final int TOKEN_SAVE_INTERVAL = 100;
+    // server error codes of a resume token no longer in the oplog
+    private static final int CHANGE_STREAM_HISTORY_LOST = 286;
+    private static final int CHANGE_STREAM_FATAL_ERROR = 280;
+    private static final RetryPolicy RECONNECT_POLICY =
+            RetryPolicy.exponential(Integer.MAX_VALUE, 100, 30_000, TimeUnit.MILLISECONDS);
+
+    private final MongoCollection<Document> collection;
+    private final MongoModelParser<T> modelParser;
+    private final CachedRemoteModelService<T> cachedService;
+    private final ResumeTokenStore tokenStore;
+
+    private volatile boolean running;
+    private volatile @Nullable MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor;
+    private @Nullable Thread thread;
+
+    public MongoChangeStreamWatcher(MongoCollection<Document> collection,
+                                    MongoModelParser<T> modelParser,
+                                    CachedRemoteModelService<T> cachedService,
+                                    ResumeTokenStore tokenStore) {
+        this.collection = collection;
+        this.modelParser = modelParser;
+        this.cachedService = cachedService;
+        this.tokenStore = tokenStore;
+    }
+
+    /**
+     * Starts watching the collection on a new daemon thread.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+
+        running = true;
+        thread = new Thread(this::watch, "storage-change-stream-" + collection.getNamespace().getFullName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stops watching, saving the last resume token.
+     */
+    @Override
+    public synchronized void close() {
+        if (!running) {
+            return;
+        }
+
+        running = false;
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> current = cursor;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (RuntimeException ignored) {
+                // closing an already broken cursor
+            }
+        }
+
+        if (thread != null && thread != Thread.currentThread()) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void watch() {
+        int failures = 0;
+
+        while (running) {
+            try {
+                follow();
+                failures = 0;
+            } catch (MongoCommandException e) {
+                if (e.getErrorCode() == CHANGE_STREAM_HISTORY_LOST || e.getErrorCode() == CHANGE_STREAM_FATAL_ERROR) {
+                    LOGGER.warning("Change stream of " + collection.getNamespace().getFullName()
+                            + " can't be resumed, invalidating the cache");
+                    tokenStore.clear();
+                    invalidateCache();
+                } else {
+                    pause(++failures, e);
+                }
+            } catch (RuntimeException e) {
+                pause(++failures, e);
+            }
+        }
+    }
+
+    private void follow() {
+        BsonDocument token = tokenStore.load();
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> current = (token == null
+                ? collection.watch()
+                : collection.watch().resumeAfter(token))
+                .fullDocument(FullDocument.UPDATE_LOOKUP)
+                .maxAwaitTime(1, TimeUnit.SECONDS)
+                .cursor();
+        cursor = current;
+
+        int unsaved = 0;
+        try {
+            while (running) {
+                ChangeStreamDocument<Document> change = current.tryNext();
+
+                if (change != null) {
+                    apply(change);
+                    unsaved++;
+                }
+
+                if (unsaved > 0 && (change == null || unsaved >= TOKEN_SAVE_INTERVAL)) {
+                    BsonDocument resumeToken = current.getResumeToken();
+                    if (resumeToken != null) {
+                        tokenStore.save(resumeToken);
+                    }
+                    unsaved = 0;
+                }
+            }
+        } finally {
+            BsonDocument resumeToken = unsaved > 0 ? current.getResumeToken() : null;
+            if (resumeToken != null) {
+                tokenStore.save(resumeToken);
+            }
+            current.close();
+            cursor = null;
+        }
+    }
+
+    private void apply(ChangeStreamDocument<Document> change) {
+        switch (change.getOperationType()) {
+            case INSERT:
+            case UPDATE:
+            case REPLACE:
+                Document document = change.getFullDocument();
+                // null when the document was deleted before the lookup, the delete follows
+                if (document != null) {
+                    refresh(document);
+                }
+                break;
+            case DELETE:
+                String id = id(change.getDocumentKey());
+                T cached = id == null ? null : cachedService.getSync(id);
+                if (cached != null) {
+                    cachedService.deleteInCache(cached);
+                }
+                break;
+            case DROP:
+            case DROP_DATABASE:
+            case RENAME:
+                invalidateCache();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void refresh(Document document) {
+        String id = document.getString("_id");
+        T cached = id == null ? null : cachedService.getSync(id);
+        if (cached == null) {
+            return;
+        }
+
+        Document stored = new Document(document);
+        stored.remove(MongoModelService.VERSION_FIELD);
+        stored.remove(MongoModelService.EXPIRES_FIELD);
+        if (stored.equals(cached.serialize())) {
+            return;
+        }
+
+        T model = modelParser.parse(DocumentReader.create(document));
+        cachedService.deleteInCache(cached);
+        cachedService.saveInCache(model);
+    }
+
+    private void invalidateCache() {
+        List<T> cached = cachedService.getAllSync();
+        if (cached == null) {
+            return;
+        }
+
+        for (T model : cached) {
+            cachedService.deleteInCache(model);
+        }
+    }
+
+    private void pause(int failures, RuntimeException cause) {
+        if (!running) {
+            return;
+        }
+
+        LOGGER.log(Level.WARNING, "Change stream of " + collection.getNamespace().getFullName()
+                + " failed, reconnecting", cause);
+        try {
+            Thread.sleep(RECONNECT_POLICY.delayMillis(failures));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    private static @Nullable String id(@Nullable BsonDocument documentKey) {
+        BsonValue id = documentKey == null ? null : documentKey.get("_id");
+        return id == null || !id.isString() ? null : id.asString().getValue();
+    }
+}
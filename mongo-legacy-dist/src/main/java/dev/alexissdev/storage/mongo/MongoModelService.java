@@ -1,21 +1,59 @@
 package dev.alexissdev.storage.mongo;
 
+import com.mongodb.ReadPreference;
+import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.CountOptions;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.ReplaceOneModel;
 import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.result.UpdateResult;
+import dev.alexissdev.storage.Aggregation;
 import dev.alexissdev.storage.dist.RemoteModelService;
 import dev.alexissdev.storage.model.Model;
+import dev.alexissdev.storage.mongo.codec.BsonModelCodec;
+import dev.alexissdev.storage.mongo.codec.BsonModelReader;
+import dev.alexissdev.storage.mongo.codec.DirtyTracker;
 import dev.alexissdev.storage.mongo.codec.DocumentCodec;
 import dev.alexissdev.storage.mongo.codec.DocumentReader;
+import dev.alexissdev.storage.mongo.codec.ModelBsonCodec;
 import dev.alexissdev.storage.mongo.codec.MongoModelParser;
+import dev.alexissdev.storage.mongo.metrics.MongoInstrumentation;
+import dev.alexissdev.storage.stream.ModelCursor;
+import dev.alexissdev.storage.stream.Page;
+import dev.alexissdev.storage.util.Futures;
+import dev.alexissdev.storage.util.Validate;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
 
 /**
  * Service implementation for handling MongoDB-backed models of type {@code T}.
@@ -28,6 +66,55 @@ import java.util.function.Consumer;
  * MongoDB and uses a {@code MongoModelParser<T>} to transform MongoDB documents into domain
  * model instances or encode domain models back into MongoDB documents.
  *
+ * <p>Queries are bounded server side with {@code maxTime}, using the remaining time of the
+ * calling operation deadline or the service timeout when called synchronously.
+ *
+ * <p>Every stored document carries a {@value #VERSION_FIELD} field used by
+ * {@link #updateSync(String, UnaryOperator)} to replace it only if nobody wrote it in the meantime.
+ * Updates increment it, while blind saves store a fresh random version so a racing update never
+ * matches the document they overwrote.
+ *
+ * <p>When the model implements {@link BsonModelCodec}, finds and saves go through a collection of
+ * the model type using a {@link ModelBsonCodec}, so models are encoded to and decoded from BSON
+ * directly, without an intermediate {@link Document}. Updates still read and write documents.
+ *
+ * <p>With an expiry after save, every write stores the expiry date in the {@value #EXPIRES_FIELD}
+ * field, which has a TTL index so the server removes the expired documents itself. Reads filter
+ * out the expired documents not removed yet.
+ *
+ * <p>With raw documents enabled, finds read the collection as {@link RawBsonDocument}s parsed with a
+ * {@link BsonModelReader}, which decodes a field from the raw bytes only when the parser reads it,
+ * so fields and children the parser skips are never decoded.
+ *
+ * <p>With partial updates enabled, the service remembers the stored state of the model instances
+ * it loads and saves with a {@link DirtyTracker}, and saves a known instance with a {@code $set} and
+ * {@code $unset} of its changed fields instead of replacing the whole document. Saving an unchanged
+ * model doesn't write anything, and instances never loaded nor saved are still fully replaced.
+ *
+ * <p>Lightweight reads can fetch only some fields with {@link #findSync(String, Collection, MongoModelParser)}
+ * and {@link #findSync(String, String, Collection, MongoModelParser)}, parsing them with a parser that
+ * reads only those fields. The models returned are partial views: saving them only sets the fields
+ * they were loaded with, and never replaces nor creates the whole document.
+ *
+ * <p>Batch jobs can scan the collection in pages ordered by {@code _id} with
+ * {@link #findPageSync(String, int)}, resuming from the token of the previous page. The documents
+ * of a page are parsed in parallel on a {@link ForkJoinPool}, batch by batch, while the cursor
+ * fetches the next batch, so the parsers must be thread safe.
+ *
+ * <p>Existence checks, counts and {@link #aggregateSync(String, Aggregation, String) aggregations} are
+ * computed server side, so they don't transfer nor parse any document.
+ *
+ * <p>Queries by field are checked against the {@link IndexManager}, which logs a warning the first
+ * time a field without index is queried.
+ *
+ * <p>When the builder creates the client, every command and connection check out is measured by a
+ * {@link MongoInstrumentation}, available with {@link #getInstrumentation()}.
+ *
+ * <p>The write concern and read preference come from the {@link OperationProfile} of the service,
+ * and {@link #withProfile(OperationProfile)} returns a view of the service using another profile for
+ * the operations made through it. Views share the lifecycle of the service: they're closed with it.
+ * Optimistic updates always read from the primary.
+ *
  * @param <T>
  *        The type of the model managed by this service. The type must extend {@code Model}
  *        and implement {@code DocumentCodec}.
@@ -36,39 +123,183 @@ import java.util.function.Consumer;
 public class MongoModelService<T extends Model & DocumentCodec>
         extends RemoteModelService<T> {
 
+    public static final String VERSION_FIELD = "_version";
+    public static final String EXPIRES_FIELD = "_expiresAt";
+
+
     private final MongoCollection<Document> mongoCollection;
+    // the same collection using a ModelBsonCodec, if the model implements BsonModelCodec
+    private final @Nullable MongoCollection<T> modelCollection;
+    // the same collection read as raw documents, if enabled
+    private final @Nullable MongoCollection<RawBsonDocument> rawCollection;
     private final MongoModelParser<T> mongoModelParser;
+    private final int cursorBatchSize;
+    private final ForkJoinPool parsePool;
+    private final IndexManager indexManager;
+    private volatile @Nullable MongoChangeStreamWatcher<T> changeStreamWatcher;
+    private final @Nullable DirtyTracker dirtyTracker;
+    private final PartialViews<T> partialViews;
+    private final long expireAfterSaveMillis;
+    private final @Nullable MongoInstrumentation instrumentation;
+    // the client created by the builder for this service, closed with it
+    private final @Nullable MongoClient client;
+    // the service the profiles are applied to, this one unless it's a view
+    private final MongoModelService<T> base;
 
-    protected MongoModelService(Executor executor, MongoCollection<Document> mongoCollection,
-                                MongoModelParser<T> mongoModelParser) {
-        super(executor);
+    protected MongoModelService(Executor executor, long timeoutMillis,
+                                long closeTimeoutMillis, boolean ownsExecutor,
+                                MongoCollection<Document> mongoCollection,
+                                @Nullable MongoCollection<T> modelCollection,
+                                @Nullable MongoCollection<RawBsonDocument> rawCollection,
+                                MongoModelParser<T> mongoModelParser,
+                                int cursorBatchSize,
+                                ForkJoinPool parsePool,
+                                IndexManager indexManager,
+                                boolean partialUpdates,
+                                long expireAfterSaveMillis,
+                                @Nullable MongoInstrumentation instrumentation,
+                                @Nullable MongoClient client) {
+        super(executor, timeoutMillis, closeTimeoutMillis, ownsExecutor);
 
         this.mongoCollection = mongoCollection;
+        this.modelCollection = modelCollection;
+        this.rawCollection = rawCollection;
         this.mongoModelParser = mongoModelParser;
+        this.cursorBatchSize = cursorBatchSize;
+        this.parsePool = parsePool;
+        this.indexManager = indexManager;
+        this.dirtyTracker = partialUpdates ? new DirtyTracker(mongoCollection.getCodecRegistry(), "_id", VERSION_FIELD, EXPIRES_FIELD) : null;
+        this.partialViews = new PartialViews<>();
+        this.expireAfterSaveMillis = expireAfterSaveMillis;
+        this.instrumentation = instrumentation;
+        this.client = client;
+        this.base = this;
+    }
+
+    /**
+     * Creates a view of the given service using the given profile. It shares the state and the
+     * lifecycle of the service, but not its resources.
+     */
+    protected MongoModelService(MongoModelService<T> service, OperationProfile profile) {
+        super(service);
+
+        this.mongoCollection = profile.apply(service.mongoCollection);
+        this.modelCollection = service.modelCollection == null ? null : profile.apply(service.modelCollection);
+        this.rawCollection = service.rawCollection == null ? null : profile.apply(service.rawCollection);
+        this.mongoModelParser = service.mongoModelParser;
+        this.cursorBatchSize = service.cursorBatchSize;
+        this.parsePool = service.parsePool;
+        this.indexManager = service.indexManager;
+        this.dirtyTracker = service.dirtyTracker;
+        this.partialViews = service.partialViews;
+        this.expireAfterSaveMillis = service.expireAfterSaveMillis;
+        this.instrumentation = service.instrumentation;
+        this.client = null;
+        this.base = service;
     }
 
     public static <T extends Model & DocumentCodec> MongoModelServiceBuilder<T> builder(Class<T> type) {
         return new MongoModelServiceBuilder<>(type);
     }
 
+    /**
+     * Returns a view of this service whose operations use the given profile, for example
+     * {@code service.withProfile(OperationProfile.DURABLE).saveSync(purchase)}. Profiles replace
+     * the one of a view instead of adding to it, and {@link OperationProfile#DEFAULT} returns the
+     * service the views were created from.
+     */
+    public MongoModelService<T> withProfile(OperationProfile profile) {
+        return profile == OperationProfile.DEFAULT ? base : new MongoModelService<>(base, profile);
+    }
+
+    public IndexManager getIndexManager() {
+        return indexManager;
+    }
+
+    /**
+     * Returns the instrumentation receiving the command and connection pool measures, or
+     * {@code null} if the builder didn't register one.
+     */
+    public @Nullable MongoInstrumentation getInstrumentation() {
+        return instrumentation;
+    }
+
+    /**
+     * Sets the watcher of the collection, closed along with this service.
+     */
+    void setChangeStreamWatcher(@Nullable MongoChangeStreamWatcher<T> changeStreamWatcher) {
+        this.changeStreamWatcher = changeStreamWatcher;
+    }
+
+    @Override
+    protected void closeResources() {
+        MongoChangeStreamWatcher<T> watcher = changeStreamWatcher;
+        if (watcher != null) {
+            watcher.close();
+        }
+        if (client != null) {
+            client.close();
+        }
+    }
+
     @Override
     public @Nullable T findSync(@NotNull String id) {
+        if (rawCollection != null) {
+            RawBsonDocument document = rawCollection
+                    .find(live(Filters.eq("_id", id)))
+                    .maxTime(maxTimeMillis(), TimeUnit.MILLISECONDS)
+                    .first();
+
+            return document == null ? null : loaded(parse(document), document);
+        }
+
+        if (modelCollection != null) {
+            return loaded(modelCollection
+                    .find(live(Filters.eq("_id", id)))
+                    .maxTime(maxTimeMillis(), TimeUnit.MILLISECONDS)
+                    .first());
+        }
+
         Document document = mongoCollection
-                .find(Filters.eq("_id", id))
+                .find(live(Filters.eq("_id", id)))
+                .maxTime(maxTimeMillis(), TimeUnit.MILLISECONDS)
                 .first();
 
         if (document == null) {
             return null;
         }
 
-        return mongoModelParser.parse(DocumentReader.create(document));
+        return loaded(mongoModelParser.parse(DocumentReader.create(document)), document);
     }
 
     @Override
     public List<T> findSync(@NotNull String field, @NotNull String value) {
+        indexManager.checkQuery(field);
+        if (rawCollection != null) {
+            List<T> models = new ArrayList<>();
+            for (RawBsonDocument document : rawCollection.find(live(Filters.eq(field, value)))
+                    .maxTime(maxTimeMillis(), TimeUnit.MILLISECONDS)) {
+                models.add(loaded(parse(document), document));
+            }
+
+            return models;
+        }
+
+        if (modelCollection != null) {
+            List<T> models = modelCollection.find(live(Filters.eq(field, value)))
+                    .maxTime(maxTimeMillis(), TimeUnit.MILLISECONDS)
+                    .into(new ArrayList<>());
+            for (T model : models) {
+                loaded(model);
+            }
+
+            return models;
+        }
+
         List<T> models = new ArrayList<>();
-        for (Document document : mongoCollection.find(Filters.eq(field, value))) {
-            models.add(mongoModelParser.parse(DocumentReader.create(document)));
+        for (Document document : mongoCollection.find(live(Filters.eq(field, value)))
+                .maxTime(maxTimeMillis(), TimeUnit.MILLISECONDS)) {
+            models.add(loaded(mongoModelParser.parse(DocumentReader.create(document)), document));
         }
 
         return models;
@@ -76,10 +307,37 @@ public class MongoModelService<T extends Model & DocumentCodec>
 
     @Override
     public List<T> findAllSync(@NotNull Consumer<T> postLoadAction) {
-        List<Document> documents = mongoCollection.find().into(new ArrayList<>());
+        if (rawCollection != null) {
+            // parsed while iterating, so every raw document can be collected right away
+            List<T> models = new ArrayList<>();
+            for (RawBsonDocument document : rawCollection.find(live(new Document()))
+                    .maxTime(maxTimeMillis(), TimeUnit.MILLISECONDS)) {
+                T model = loaded(parse(document), document);
+
+                postLoadAction.accept(model);
+                models.add(model);
+            }
+
+            return models;
+        }
+
+        if (modelCollection != null) {
+            List<T> models = modelCollection.find(live(new Document()))
+                    .maxTime(maxTimeMillis(), TimeUnit.MILLISECONDS)
+                    .into(new ArrayList<>());
+            for (T model : models) {
+                postLoadAction.accept(loaded(model));
+            }
+
+            return models;
+        }
+
+        List<Document> documents = mongoCollection.find(live(new Document()))
+                .maxTime(maxTimeMillis(), TimeUnit.MILLISECONDS)
+                .into(new ArrayList<>());
         List<T> models = new ArrayList<>();
         for (Document document : documents) {
-            T model = mongoModelParser.parse(DocumentReader.create(document));
+            T model = loaded(mongoModelParser.parse(DocumentReader.create(document)), document);
 
             postLoadAction.accept(model);
             models.add(model);
@@ -88,17 +346,571 @@ public class MongoModelService<T extends Model & DocumentCodec>
         return models;
     }
 
+    @Override
+    public boolean existsSync(@NotNull String id) {
+        return mongoCollection.countDocuments(
+                live(Filters.eq("_id", id)),
+                new CountOptions().limit(1).maxTime(maxTimeMillis(), TimeUnit.MILLISECONDS)
+        ) > 0;
+    }
+
+    @Override
+    public long countSync() {
+        return mongoCollection.countDocuments(
+                live(new Document()),
+                new CountOptions().maxTime(maxTimeMillis(), TimeUnit.MILLISECONDS)
+        );
+    }
+
+    @Override
+    public long countSync(@NotNull String field, @NotNull String value) {
+        indexManager.checkQuery(field);
+        return mongoCollection.countDocuments(
+                live(Filters.eq(field, value)),
+                new CountOptions().maxTime(maxTimeMillis(), TimeUnit.MILLISECONDS)
+        );
+    }
+
+    /**
+     * Computes the aggregation server side with a {@code $group} stage, so only one document
+     * per group is transferred. Groups with no numeric value are left out.
+     */
+    @Override
+    public Map<String, Number> aggregateSync(@NotNull String groupField, @NotNull Aggregation aggregation,
+                                             @Nullable String valueField) {
+        List<Bson> pipeline = new ArrayList<>();
+        if (expireAfterSaveMillis > 0) {
+            pipeline.add(Aggregates.match(live(new Document())));
+        }
+        pipeline.addAll(AggregationPipelines.group(groupField, aggregation, valueField));
+
+        return AggregationPipelines.results(mongoCollection
+                .aggregate(pipeline)
+                .allowDiskUse(true)
+                .maxTime(maxTimeMillis(), TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Finds a model fetching only the given fields, see the class documentation.
+     *
+     * @param id
+     * 	The id of the model.
+     * @param fields
+     * 	The fields to fetch, dotted paths are allowed. The id is always fetched.
+     * @param parser
+     * 	The parser of the model, which must read only the given fields.
+     *
+     * @return The partial view of the model, or {@code null} if it doesn't exist.
+     */
+    public @Nullable T findSync(@NotNull String id, @NotNull Collection<String> fields,
+                                @NotNull MongoModelParser<T> parser) {
+        Set<String> projection = new LinkedHashSet<>(fields);
+        Document document = mongoCollection
+                .find(live(Filters.eq("_id", id)))
+                .projection(Projections.include(new ArrayList<>(projection)))
+                .maxTime(maxTimeMillis(), TimeUnit.MILLISECONDS)
+                .first();
+
+        if (document == null) {
+            return null;
+        }
+
+        return view(parser.parse(DocumentReader.create(document)), projection);
+    }
+
+    /**
+     * Finds the models whose field matches the given value, fetching only the given fields.
+     *
+     * @see #findSync(String, Collection, MongoModelParser)
+     */
+    public List<T> findSync(@NotNull String field, @NotNull String value,
+                            @NotNull Collection<String> fields, @NotNull MongoModelParser<T> parser) {
+        indexManager.checkQuery(field);
+        Set<String> projection = new LinkedHashSet<>(fields);
+        List<T> models = new ArrayList<>();
+        for (Document document : mongoCollection.find(live(Filters.eq(field, value)))
+                .projection(Projections.include(new ArrayList<>(projection)))
+                .maxTime(maxTimeMillis(), TimeUnit.MILLISECONDS)) {
+            models.add(view(parser.parse(DocumentReader.create(document)), projection));
+        }
+
+        return models;
+    }
+
+    public CompletableFuture<T> find(String id, Collection<String> fields, MongoModelParser<T> parser) {
+        return supplyAsync(() -> findSync(id, fields, parser));
+    }
+
+    public CompletableFuture<List<T>> find(String field, String value,
+                                           Collection<String> fields, MongoModelParser<T> parser) {
+        return supplyAsync(() -> findSync(field, value, fields, parser));
+    }
+
+    /**
+     * Fetches the models following the given token in {@code _id} order.
+     *
+     * @param token
+     * 	The token of the previous page, or {@code null} to fetch the first page.
+     * @param pageSize
+     * 	The maximum number of models in the page.
+     *
+     * @return The page, whose token is {@code null} once the end of the collection is reached.
+     */
+    public Page<T> findPageSync(@Nullable String token, int pageSize) {
+        return findPage(new Document(), token, pageSize);
+    }
+
+    /**
+     * Fetches the models whose field matches the given value following the given token, in
+     * {@code _id} order. A compound index on the field and {@code _id} avoids sorting them.
+     *
+     * @see #findPageSync(String, int)
+     */
+    public Page<T> findPageSync(@NotNull String field, @NotNull String value,
+                                @Nullable String token, int pageSize) {
+        indexManager.checkQuery(field);
+        return findPage(Filters.eq(field, value), token, pageSize);
+    }
+
+    public CompletableFuture<Page<T>> findPage(@Nullable String token, int pageSize) {
+        return supplyAsync(() -> findPageSync(token, pageSize));
+    }
+
+    public CompletableFuture<Page<T>> findPage(String field, String value, @Nullable String token, int pageSize) {
+        return supplyAsync(() -> findPageSync(field, value, token, pageSize));
+    }
+
+    /**
+     * Returns whether the model is a partial view loaded with a projection.
+     */
+    public boolean isPartial(T model) {
+        return partialViews.fields(model) != null;
+    }
+
     @Override
     public void saveSync(@NotNull T model) {
+        Set<String> projection = partialViews.fields(model);
+        if (projection != null) {
+            Document update = viewUpdate(model, projection);
+            if (update != null) {
+                mongoCollection.updateOne(Filters.eq("_id", model.getId()), update);
+            }
+            return;
+        }
+
+        if (dirtyTracker != null) {
+            savePartially(model, dirtyTracker);
+            return;
+        }
+
+        if (modelCollection != null) {
+            // the codec writes the random version
+            modelCollection.replaceOne(
+                    Filters.eq("_id", model.getId()),
+                    model,
+                    new ReplaceOptions().upsert(true)
+            );
+            return;
+        }
+
         mongoCollection.replaceOne(
                 Filters.eq("_id", model.getId()),
-                model.serialize(),
+                serialize(model),
                 new ReplaceOptions().upsert(true)
         );
     }
 
+    @Override
+    public void saveBatchSync(@NotNull Collection<T> models) {
+        // partial views are set apart, the rest is saved as usual
+        List<WriteModel<Document>> viewWrites = new ArrayList<>();
+        List<T> fullModels = new ArrayList<>(models.size());
+        for (T model : models) {
+            Set<String> projection = partialViews.fields(model);
+            if (projection == null) {
+                fullModels.add(model);
+                continue;
+            }
+
+            Document update = viewUpdate(model, projection);
+            if (update != null) {
+                viewWrites.add(new UpdateOneModel<>(Filters.eq("_id", model.getId()), update));
+            }
+        }
+
+        if (!viewWrites.isEmpty()) {
+            mongoCollection.bulkWrite(viewWrites, new BulkWriteOptions().ordered(false));
+        }
+
+        models = fullModels;
+        if (models.isEmpty()) {
+            return;
+        }
+
+        if (dirtyTracker != null) {
+            saveBatchPartially(models, dirtyTracker);
+            return;
+        }
+
+        if (modelCollection != null) {
+            List<WriteModel<T>> writes = new ArrayList<>(models.size());
+            for (T model : models) {
+                writes.add(new ReplaceOneModel<>(
+                        Filters.eq("_id", model.getId()),
+                        model,
+                        new ReplaceOptions().upsert(true)
+                ));
+            }
+
+            modelCollection.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+            return;
+        }
+
+        List<WriteModel<Document>> writes = new ArrayList<>(models.size());
+        for (T model : models) {
+            writes.add(new ReplaceOneModel<>(
+                    Filters.eq("_id", model.getId()),
+                    serialize(model),
+                    new ReplaceOptions().upsert(true)
+            ));
+        }
+
+        // unordered, so the server can apply the writes in parallel
+        mongoCollection.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+    }
+
+    /**
+     * Applies the updater with optimistic concurrency: the document is replaced only if its
+     * version didn't change since it was read, otherwise it's read and updated again after
+     * a short jittered backoff.
+     *
+     * @throws ConcurrentModificationException if the update keeps conflicting
+     */
+    @Override
+    public @Nullable T updateSync(@NotNull String id, @NotNull UnaryOperator<T> updater) {
+        // stale reads from a secondary would only make the update conflict
+        MongoCollection<Document> primary = mongoCollection.withReadPreference(ReadPreference.primary());
+        for (int attempt = 1; ; attempt++) {
+            Document document = primary
+                    .find(live(Filters.eq("_id", id)))
+                    .maxTime(maxTimeMillis(), TimeUnit.MILLISECONDS)
+                    .first();
+
+            if (document == null) {
+                return null;
+            }
+
+            Object version = document.get(VERSION_FIELD);
+            T updated = updater.apply(mongoModelParser.parse(DocumentReader.create(document)));
+
+            Document replacement = updated.serialize();
+            replacement.put(VERSION_FIELD, version instanceof Long ? (Long) version + 1 : 1L);
+            expiring(replacement);
+
+            Bson filter = Filters.and(
+                    Filters.eq("_id", id),
+                    version == null ? Filters.exists(VERSION_FIELD, false) : Filters.eq(VERSION_FIELD, version)
+            );
+
+            if (mongoCollection.replaceOne(filter, replacement).getMatchedCount() == 1) {
+                if (dirtyTracker != null) {
+                    dirtyTracker.track(updated, replacement);
+                }
+                return updated;
+            }
+
+            awaitConflictRetry(attempt, "update", id);
+        }
+    }
+
     @Override
     public void deleteSync(@NotNull T model) {
         mongoCollection.deleteOne(Filters.eq("_id", model.getId()));
+        if (dirtyTracker != null) {
+            dirtyTracker.forget(model);
+        }
+    }
+
+    @Override
+    protected ModelCursor<T> openCursor() {
+        return openCursor(new Document());
+    }
+
+    @Override
+    protected ModelCursor<T> openCursor(String field, String value) {
+        indexManager.checkQuery(field);
+        return openCursor(Filters.eq(field, value));
+    }
+
+    private ModelCursor<T> openCursor(Bson filter) {
+        // no maxTime here, the cursor lives as long as its subscriber keeps requesting
+        if (rawCollection != null) {
+            MongoCursor<RawBsonDocument> cursor = rawCollection.find(live(filter))
+                    .batchSize(cursorBatchSize)
+                    .iterator();
+
+            return ModelCursor.of(cursor, document -> loaded(parse(document), document), cursor::close,
+                    () -> isExhausted(cursor));
+        }
+
+        if (modelCollection != null) {
+            MongoCursor<T> cursor = modelCollection.find(live(filter))
+                    .batchSize(cursorBatchSize)
+                    .iterator();
+
+            return ModelCursor.of(cursor, this::loaded, cursor::close, () -> isExhausted(cursor));
+        }
+
+        MongoCursor<Document> cursor = mongoCollection.find(live(filter))
+                .batchSize(cursorBatchSize)
+                .iterator();
+
+        return ModelCursor.of(
+                cursor,
+                document -> loaded(mongoModelParser.parse(DocumentReader.create(document)), document),
+                cursor::close,
+                () -> isExhausted(cursor)
+        );
+    }
+
+    // the server closed the cursor and its last batch was consumed, without any getMore
+    private static boolean isExhausted(MongoCursor<?> cursor) {
+        return cursor.getServerCursor() == null && cursor.available() == 0;
+    }
+
+    private Page<T> findPage(Bson filter, @Nullable String token, int pageSize) {
+        Validate.state(pageSize > 0, "pageSize must be positive");
+        Bson pageFilter = token == null ? filter : Filters.and(filter, Filters.gt("_id", token));
+
+        List<T> models;
+        if (rawCollection != null) {
+            try (MongoCursor<RawBsonDocument> cursor = rawCollection.find(live(pageFilter))
+                    .sort(Sorts.ascending("_id"))
+                    .limit(pageSize)
+                    .batchSize(Math.min(pageSize, cursorBatchSize))
+                    .maxTime(maxTimeMillis(), TimeUnit.MILLISECONDS)
+                    .iterator()) {
+                models = parseInParallel(cursor, document -> loaded(parse(document), document));
+            }
+        } else {
+            try (MongoCursor<Document> cursor = mongoCollection.find(live(pageFilter))
+                    .sort(Sorts.ascending("_id"))
+                    .limit(pageSize)
+                    .batchSize(Math.min(pageSize, cursorBatchSize))
+                    .maxTime(maxTimeMillis(), TimeUnit.MILLISECONDS)
+                    .iterator()) {
+                models = parseInParallel(cursor,
+                        document -> loaded(mongoModelParser.parse(DocumentReader.create(document)), document));
+            }
+        }
+
+        String nextToken = models.size() < pageSize ? null : models.get(models.size() - 1).getId();
+        return new Page<>(models, nextToken);
+    }
+
+    /**
+     * Parses every batch fetched by the cursor on the parse pool, while the cursor fetches the
+     * next one. The models are returned in the cursor order.
+     */
+    private <D> List<T> parseInParallel(MongoCursor<D> cursor, Function<D, T> parser) {
+        List<ForkJoinTask<List<T>>> tasks = new ArrayList<>();
+        List<D> batch = new ArrayList<>(cursorBatchSize);
+
+        while (cursor.hasNext()) {
+            batch.add(cursor.next());
+            if (batch.size() == cursorBatchSize) {
+                tasks.add(parse(batch, parser));
+                batch = new ArrayList<>(cursorBatchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            tasks.add(parse(batch, parser));
+        }
+
+        List<T> models = new ArrayList<>();
+        for (ForkJoinTask<List<T>> task : tasks) {
+            models.addAll(task.join());
+        }
+
+        return models;
+    }
+
+    private <D> ForkJoinTask<List<T>> parse(List<D> batch, Function<D, T> parser) {
+        // a parallel stream started from the pool runs on the pool
+        return parsePool.submit(() -> batch.parallelStream()
+                .map(parser)
+                .collect(Collectors.toList()));
+    }
+
+    private void savePartially(T model, DirtyTracker dirtyTracker) {
+        Document document = model.serialize();
+        Document update = dirtyTracker.diff(model, document);
+
+        if (update != null) {
+            if (update.isEmpty()) {
+                return;
+            }
+
+            UpdateResult result = mongoCollection.updateOne(Filters.eq("_id", model.getId()), stamped(update));
+            if (result.getMatchedCount() == 1) {
+                dirtyTracker.track(model, document);
+                return;
+            }
+            // deleted in the meantime, write it again as a whole
+        }
+
+        mongoCollection.replaceOne(
+                Filters.eq("_id", model.getId()),
+                stamped(document),
+                new ReplaceOptions().upsert(true)
+        );
+        dirtyTracker.track(model, document);
+    }
+
+    private void saveBatchPartially(Collection<T> models, DirtyTracker dirtyTracker) {
+        List<WriteModel<Document>> writes = new ArrayList<>(models.size());
+        List<Document> documents = new ArrayList<>(models.size());
+        List<T> written = new ArrayList<>(models.size());
+
+        for (T model : models) {
+            Document document = model.serialize();
+            Document update = dirtyTracker.diff(model, document);
+
+            if (update == null) {
+                writes.add(new ReplaceOneModel<>(
+                        Filters.eq("_id", model.getId()),
+                        stamped(document),
+                        new ReplaceOptions().upsert(true)
+                ));
+            } else if (!update.isEmpty()) {
+                // unlike saveSync, a model deleted in the meantime is not written again
+                writes.add(new UpdateOneModel<>(Filters.eq("_id", model.getId()), stamped(update)));
+            } else {
+                continue;
+            }
+
+            documents.add(document);
+            written.add(model);
+        }
+
+        if (writes.isEmpty()) {
+            return;
+        }
+
+        mongoCollection.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+        for (int i = 0; i < written.size(); i++) {
+            dirtyTracker.track(written.get(i), documents.get(i));
+        }
+    }
+
+    private T view(T model, Set<String> projection) {
+        partialViews.register(model, projection);
+        return model;
+    }
+
+    /**
+     * Builds the update setting the projected fields of a partial view.
+     *
+     * @return the update, or {@code null} if the view doesn't hold any of the fields.
+     */
+    private @Nullable Document viewUpdate(T model, Set<String> projection) {
+        Document document = model.serialize();
+        Document set = new Document();
+
+        for (String path : projection) {
+            Object value = document;
+            for (String key : path.split("\\.")) {
+                value = value instanceof Document ? ((Document) value).get(key) : null;
+            }
+
+            if (value != null && !path.equals("_id")) {
+                set.put(path, value);
+            }
+        }
+
+        return set.isEmpty() ? null : stamped(new Document("$set", set));
+    }
+
+    /**
+     * Remembers the state of a loaded model when partial updates are enabled. Models decoded by
+     * their codec have no document to remember, so they're serialized again.
+     */
+    private T loaded(T model) {
+        if (dirtyTracker != null && model != null) {
+            dirtyTracker.track(model, model.serialize());
+        }
+
+        return model;
+    }
+
+    /**
+     * Remembers the document a model was parsed from as its state when partial updates are enabled.
+     */
+    private T loaded(T model, Document document) {
+        if (dirtyTracker != null) {
+            dirtyTracker.track(model, document);
+        }
+
+        return model;
+    }
+
+    private T loaded(T model, RawBsonDocument document) {
+        if (dirtyTracker != null) {
+            dirtyTracker.track(model, document);
+        }
+
+        return model;
+    }
+
+    private T parse(RawBsonDocument document) {
+        return mongoModelParser.parse(BsonModelReader.create(document));
+    }
+
+    private Document serialize(T model) {
+        return stamped(model.serialize());
+    }
+
+    /**
+     * Adds a random version and the expiry, if enabled, to a document or to the {@code $set}
+     * of an update document.
+     */
+    private Document stamped(Document document) {
+        Document target = document;
+        if (document.containsKey("$set") || document.containsKey("$unset")) {
+            target = document.get("$set", Document.class);
+            if (target == null) {
+                target = new Document();
+                document.put("$set", target);
+            }
+        }
+
+        target.put(VERSION_FIELD, ThreadLocalRandom.current().nextLong());
+        expiring(target);
+        return document;
+    }
+
+    private void expiring(Document document) {
+        if (expireAfterSaveMillis > 0) {
+            document.put(EXPIRES_FIELD, new Date(System.currentTimeMillis() + expireAfterSaveMillis));
+        }
+    }
+
+    /**
+     * Excludes the expired documents the server didn't purge yet, as the TTL monitor only runs
+     * once a minute.
+     */
+    private Bson live(Bson filter) {
+        if (expireAfterSaveMillis <= 0) {
+            return filter;
+        }
+
+        return Filters.and(filter, Filters.not(Filters.lte(EXPIRES_FIELD, new Date())));
+    }
+
+    /**
+     * Returns the {@code maxTime} for the next query, zero means no limit.
+     */
+    protected long maxTimeMillis() {
+        return Futures.remainingMillis(timeoutMillis);
     }
 }
\ No newline at end of file
@@ -1,15 +1,31 @@
 package dev.alexissdev.storage.mongo;
 
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
 import dev.alexissdev.storage.ModelService;
 import dev.alexissdev.storage.builder.LayoutModelServiceBuilder;
 import dev.alexissdev.storage.dist.DelegatedCachedModelService;
 import dev.alexissdev.storage.model.Model;
+import dev.alexissdev.storage.mongo.codec.BsonModelCodec;
 import dev.alexissdev.storage.mongo.codec.DocumentCodec;
+import dev.alexissdev.storage.mongo.codec.ModelBsonCodec;
 import dev.alexissdev.storage.mongo.codec.MongoModelParser;
+import dev.alexissdev.storage.mongo.metrics.MongoCommandMetrics;
+import dev.alexissdev.storage.mongo.metrics.MongoInstrumentation;
+import dev.alexissdev.storage.mongo.metrics.MongoMetricsListener;
 import dev.alexissdev.storage.util.Validate;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.configuration.CodecRegistries;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Builder class for creating a MongoDB-backed {@code ModelService} instance for managing models
@@ -19,6 +35,9 @@ import org.bson.Document;
  * <p>The main purpose of this class is to provide a fluent API to set up and create a
  * {@code ModelService} configured to work with MongoDB collections.
  *
+ * <p>If the model type implements {@code BsonModelCodec}, a {@code ModelBsonCodec} is registered
+ * for it, so the service encodes and decodes the models without intermediate documents.
+ *
  * <p>Type parameters:
  * <ul>
  *     <li>{@code T} - The type of the model, which extends {@code Model} and {@code DocumentCodec}.
@@ -33,6 +52,18 @@ public class MongoModelServiceBuilder<T extends Model & DocumentCodec>
     private MongoDatabase database;
     private String collectionName;
     private MongoModelParser<T> modelParser;
+    private int cursorBatchSize = 100;
+    private boolean rawDocuments;
+    private boolean partialUpdates;
+    private ForkJoinPool parsePool = ForkJoinPool.commonPool();
+    private final Set<String> indexedFields = new LinkedHashSet<>();
+    private boolean indexResolverFields;
+    private ResumeTokenStore resumeTokenStore;
+    private OperationProfile profile = OperationProfile.DEFAULT;
+    private MongoClientSettings clientSettings;
+    private String databaseName;
+    private MongoInstrumentation instrumentation;
+    private int expireAfterSave;
 
     protected MongoModelServiceBuilder(Class<T> type) {
         super(type);
@@ -43,6 +74,34 @@ public class MongoModelServiceBuilder<T extends Model & DocumentCodec>
         return this;
     }
 
+    /**
+     * Creates the client of the service from the given settings instead of using an existing
+     * database. A {@link MongoMetricsListener} is registered in the settings, and the client is
+     * closed with the service.
+     *
+     * @param clientSettings the settings of the client
+     * @param databaseName the name of the database
+     * @return the current builder instance
+     */
+    public MongoModelServiceBuilder<T> client(MongoClientSettings clientSettings, String databaseName) {
+        this.clientSettings = clientSettings;
+        this.databaseName = databaseName;
+        return this;
+    }
+
+    /**
+     * Sets the instrumentation receiving the command latencies, the documents returned and the
+     * connection pool waits of the client created by the builder. To measure a client created
+     * elsewhere, register a {@link MongoMetricsListener} in its settings.
+     *
+     * @param instrumentation the instrumentation, a new {@link MongoCommandMetrics} by default
+     * @return the current builder instance
+     */
+    public MongoModelServiceBuilder<T> instrumentation(MongoInstrumentation instrumentation) {
+        this.instrumentation = instrumentation;
+        return this;
+    }
+
     public MongoModelServiceBuilder<T> modelParser(MongoModelParser<T> modelParser) {
         this.modelParser = modelParser;
         return this;
@@ -53,20 +112,191 @@ public class MongoModelServiceBuilder<T extends Model & DocumentCodec>
         return this;
     }
 
+    /**
+     * Sets how many documents are fetched per round trip when the models are streamed.
+     *
+     * @param cursorBatchSize the cursor batch size, must be positive
+     * @return the current builder instance
+     */
+    public MongoModelServiceBuilder<T> cursorBatchSize(int cursorBatchSize) {
+        this.cursorBatchSize = cursorBatchSize;
+        return this;
+    }
+
+    /**
+     * Declares fields queried by value, an ascending index is created for each one of them
+     * when the service is built, unless it already exists.
+     *
+     * @param fields the fields to index
+     * @return the current builder instance
+     */
+    public MongoModelServiceBuilder<T> index(String... fields) {
+        indexedFields.addAll(Arrays.asList(fields));
+        return this;
+    }
+
+    /**
+     * Sets whether the fields of the resolver registry are indexed as well, as the cached
+     * service queries them by value. Resolvers must be named after the document fields.
+     *
+     * @param indexResolverFields whether to index the resolver fields, false by default
+     * @return the current builder instance
+     */
+    public MongoModelServiceBuilder<T> indexResolverFields(boolean indexResolverFields) {
+        this.indexResolverFields = indexResolverFields;
+        return this;
+    }
+
+    /**
+     * Sets the default write concern and read preference of the service operations, it can be
+     * overridden per call with {@link MongoModelService#withProfile(OperationProfile)}.
+     *
+     * @param profile the profile of the service, {@link OperationProfile#DEFAULT} by default
+     * @return the current builder instance
+     */
+    public MongoModelServiceBuilder<T> profile(OperationProfile profile) {
+        this.profile = profile;
+        return this;
+    }
+
+    /**
+     * Keeps the cached service coherent with the writes of other nodes through a
+     * {@link MongoChangeStreamWatcher}, started when the service is built and closed with it.
+     * It requires a cached service and a replica set.
+     *
+     * @param resumeTokenStore the store of the change stream resume token
+     * @return the current builder instance
+     */
+    public MongoModelServiceBuilder<T> watchChanges(ResumeTokenStore resumeTokenStore) {
+        this.resumeTokenStore = resumeTokenStore;
+        return this;
+    }
+
+    /**
+     * Sets how long the models live after their last save. The expiry is stored in the
+     * {@value MongoModelService#EXPIRES_FIELD} field with a TTL index, so the server removes
+     * the expired models itself.
+     *
+     * @param expireAfterSave the seconds a model lives after being saved, zero or less to never expire
+     * @return the current builder instance
+     */
+    public MongoModelServiceBuilder<T> expireAfterSave(int expireAfterSave) {
+        this.expireAfterSave = expireAfterSave;
+        return this;
+    }
+
+    /**
+     * Sets the pool parsing the documents of the pages in parallel.
+     *
+     * @param parsePool the parse pool, the common pool by default
+     * @return the current builder instance
+     */
+    public MongoModelServiceBuilder<T> parsePool(ForkJoinPool parsePool) {
+        this.parsePool = parsePool;
+        return this;
+    }
+
+    /**
+     * Sets whether the models are parsed from raw BSON documents, decoding only the fields
+     * the parser reads. It's useful when the parser skips most of large documents.
+     *
+     * @param rawDocuments whether to read raw documents, false by default
+     * @return the current builder instance
+     */
+    public MongoModelServiceBuilder<T> rawDocuments(boolean rawDocuments) {
+        this.rawDocuments = rawDocuments;
+        return this;
+    }
+
+    /**
+     * Sets whether saves of known models only write their changed fields. The service then keeps
+     * a serialized copy of every model it loads or saves, and serializes every loaded model once
+     * more to take it.
+     *
+     * @param partialUpdates whether to write partial updates, false by default
+     * @return the current builder instance
+     */
+    public MongoModelServiceBuilder<T> partialUpdates(boolean partialUpdates) {
+        this.partialUpdates = partialUpdates;
+        return this;
+    }
+
     @Override
     public ModelService<T> build() {
         check();
         Validate.notNull(modelParser, "modelParser");
-        Validate.notNull(database, "database");
+        Validate.state(database == null || clientSettings == null, "database and client are exclusive");
+        Validate.state(database != null || clientSettings != null, "database or client must be set");
+        Validate.state(clientSettings == null || databaseName != null, "databaseName must be set");
         Validate.notNull(collectionName, "collectionName");
+        Validate.state(cursorBatchSize > 0, "cursorBatchSize must be positive");
+        Validate.notNull(parsePool, "parsePool");
+        Validate.notNull(profile, "profile");
+        Validate.state(resumeTokenStore == null || cacheModelService != null,
+                "watchChanges requires a cached service");
 
-        MongoCollection<Document> collection = database.getCollection(collectionName);
-        MongoModelService<T> modelService = new MongoModelService<>(executor, collection, modelParser);
+        MongoClient client = null;
+        MongoDatabase database = this.database;
+        MongoInstrumentation instrumentation = this.instrumentation;
+        if (clientSettings != null) {
+            if (instrumentation == null) {
+                instrumentation = new MongoCommandMetrics();
+            }
+
+            client = MongoClients.create(new MongoMetricsListener(instrumentation).register(clientSettings));
+            database = client.getDatabase(databaseName);
+        }
+
+        long expireAfterSaveMillis = expireAfterSave > 0 ? TimeUnit.SECONDS.toMillis(expireAfterSave) : 0;
+        MongoCollection<Document> collection = profile.apply(database.getCollection(collectionName));
+        MongoCollection<T> modelCollection = null;
+        if (BsonModelCodec.class.isAssignableFrom(type)) {
+            ModelBsonCodec<T> codec = new ModelBsonCodec<>(
+                    type, modelParser, collection.getCodecRegistry(), MongoModelService.VERSION_FIELD,
+                    expireAfterSaveMillis > 0 ? MongoModelService.EXPIRES_FIELD : null, expireAfterSaveMillis);
+            modelCollection = collection.withDocumentClass(type)
+                    .withCodecRegistry(CodecRegistries.fromRegistries(
+                            CodecRegistries.fromCodecs(codec),
+                            collection.getCodecRegistry()
+                    ));
+        }
+
+        Set<String> fields = new LinkedHashSet<>(indexedFields);
+        if (indexResolverFields && resolverRegistry != null) {
+            fields.addAll(resolverRegistry.getFields());
+        }
+
+        // created on threads of their own, the service can be used meanwhile
+        IndexManager indexManager = new IndexManager(collection);
+        indexManager.ensureIndexes(fields);
+        if (expireAfterSaveMillis > 0) {
+            indexManager.ensureTtlIndex(MongoModelService.EXPIRES_FIELD);
+        }
+
+        MongoModelService<T> modelService = new MongoModelService<>(
+                executor, timeoutMillis, closeTimeoutMillis,
+                ownsExecutor && cacheModelService == null,
+                collection, modelCollection,
+                rawDocuments ? collection.withDocumentClass(RawBsonDocument.class) : null,
+                modelParser, cursorBatchSize, parsePool, indexManager, partialUpdates, expireAfterSaveMillis,
+                instrumentation, client
+        );
         if (cacheModelService == null) {
             return modelService;
         }
 
-        return new DelegatedCachedModelService<>(executor, cacheModelService, resolverRegistry, modelService);
+        DelegatedCachedModelService<T> cachedService = new DelegatedCachedModelService<>(
+                executor, timeoutMillis, closeTimeoutMillis, ownsExecutor,
+                cacheModelService, resolverRegistry, modelService
+        );
+        if (resumeTokenStore != null) {
+            MongoChangeStreamWatcher<T> watcher = new MongoChangeStreamWatcher<>(
+                    collection, modelParser, cachedService, resumeTokenStore);
+            modelService.setChangeStreamWatcher(watcher);
+            watcher.start();
+        }
+
+        return cachedService;
 
     }
 
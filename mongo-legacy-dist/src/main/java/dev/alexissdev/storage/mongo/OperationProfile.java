@@ -0,0 +1,54 @@
+package dev.alexissdev.storage.mongo;
+
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.MongoCollection;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Trades durability and consistency for latency in the Mongo operations.
+ */
+public enum OperationProfile {
+
+    /**
+     * Uses the write concern and read preference of the collection. Given to
+     * {@link MongoModelService#withProfile(OperationProfile)}, it returns the service with the profile
+     * it was built with.
+     */
+    DEFAULT(null, null),
+
+    /**
+     * Acknowledged by the primary only, and reads from secondaries when available. Suited for
+     * data that can be lost or read stale, such as frequent autosaves of ephemeral stats.
+     */
+    FAST(WriteConcern.W1, ReadPreference.secondaryPreferred()),
+
+    /**
+     * Acknowledged by a majority of the replica set, and reads from the primary. Suited for
+     * data that must survive a failover, such as purchases.
+     */
+    DURABLE(WriteConcern.MAJORITY, ReadPreference.primary());
+
+    private final @Nullable WriteConcern writeConcern;
+    private final @Nullable ReadPreference readPreference;
+
+    OperationProfile(@Nullable WriteConcern writeConcern, @Nullable ReadPreference readPreference) {
+        this.writeConcern = writeConcern;
+        this.readPreference = readPreference;
+    }
+
+    /**
+     * Returns the collection using the write concern and read preference of this profile.
+     */
+    public <D> MongoCollection<D> apply(MongoCollection<D> collection) {
+        MongoCollection<D> profiled = collection;
+        if (writeConcern != null) {
+            profiled = profiled.withWriteConcern(writeConcern);
+        }
+        if (readPreference != null) {
+            profiled = profiled.withReadPreference(readPreference);
+        }
+
+        return profiled;
+    }
+}
@@ -0,0 +1,31 @@
+package dev.alexissdev.storage.mongo;
+
+import dev.alexissdev.storage.model.Model;
+import dev.alexissdev.storage.util.WeakIdentityMap;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Set;
+
+/**
+ * Registry of the models loaded with a projection, with the fields they were loaded with.
+ *
+ * <p>Models are compared by identity and weakly referenced, so any number of views of the same
+ * model are kept apart, a fully loaded instance of the same model is never mistaken for a partial
+ * one, and partial views are forgotten once they're no longer used. A view stays one for as long
+ * as it's used, even after its model is deleted, so it's never written as a whole.
+ */
+class PartialViews<T extends Model> {
+
+    private final WeakIdentityMap<T, Set<String>> views = new WeakIdentityMap<>();
+
+    void register(T model, Set<String> fields) {
+        views.put(model, fields);
+    }
+
+    /**
+     * @return the fields the model was loaded with, or {@code null} if it's not a partial view.
+     */
+    @Nullable Set<String> fields(T model) {
+        return views.get(model);
+    }
+}
@@ -0,0 +1,90 @@
+package dev.alexissdev.storage.mongo;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOptions;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Persists the resume token of a {@link MongoChangeStreamWatcher}, so it continues from the last
+ * applied change after a restart instead of missing the changes made while it was stopped.
+ */
+public interface ResumeTokenStore {
+
+    /**
+     * @return the last saved token, or {@code null} to start watching from now.
+     */
+    @Nullable BsonDocument load();
+
+    void save(BsonDocument token);
+
+    /**
+     * Forgets the saved token, used when it can't be resumed anymore.
+     */
+    void clear();
+
+    /**
+     * Creates a store keeping the token in memory only, so the changes made while the
+     * process is stopped are not replayed.
+     */
+    static ResumeTokenStore memory() {
+        return new ResumeTokenStore() {
+
+            private volatile BsonDocument token;
+
+            @Override
+            public @Nullable BsonDocument load() {
+                return token;
+            }
+
+            @Override
+            public void save(BsonDocument token) {
+                this.token = token;
+            }
+
+            @Override
+            public void clear() {
+                token = null;
+            }
+        };
+    }
+
+    /**
+     * Creates a store keeping the token in a document of the given collection.
+     *
+     * @param collection
+     * 	the collection holding the tokens, it may be shared by several watchers.
+     * @param watcherId
+     * 	the id of the document holding the token, unique per watcher and node.
+     */
+    static ResumeTokenStore mongo(MongoCollection<Document> collection, String watcherId) {
+        return new ResumeTokenStore() {
+
+            @Override
+            public @Nullable BsonDocument load() {
+                BsonDocument document = collection.find(Filters.eq("_id", watcherId), BsonDocument.class).first();
+                if (document == null || !document.containsKey("token")) {
+                    return null;
+                }
+
+                return document.getDocument("token");
+            }
+
+            @Override
+            public void save(BsonDocument token) {
+                collection.replaceOne(
+                        Filters.eq("_id", watcherId),
+                        new Document("_id", watcherId).append("token", token),
+                        new ReplaceOptions().upsert(true)
+                );
+            }
+
+            @Override
+            public void clear() {
+                collection.deleteOne(Filters.eq("_id", watcherId));
+            }
+        };
+    }
+}
@@ -0,0 +1,33 @@
+package dev.alexissdev.storage.mongo.codec;
+
+import dev.alexissdev.storage.codec.ModelWriter;
+import org.bson.Document;
+
+/**
+ * A {@link DocumentCodec} able to write itself into any {@link ModelWriter}, instead of
+ * building its own {@link Document}.
+ *
+ * <p>Models implementing it are encoded by the {@code MongoModelService} straight into the
+ * driver {@code BsonWriter} through a {@link BsonModelWriter}, and decoded with a
+ * {@link BsonModelReader}, so no intermediate {@link Document} is created on saves and loads.
+ * Their {@link #serialize()} is still available and writes into a {@link DocumentWriter}.
+ */
+
+public interface BsonModelCodec
+        extends DocumentCodec {
+
+    /**
+     * Writes the fields of this object, including its {@code _id} if it's a model.
+     *
+     * @param writer
+     * 	The writer receiving the fields.
+     *
+     * @return The given writer, for chaining.
+     */
+    ModelWriter<Document> encode(ModelWriter<Document> writer);
+
+    @Override
+    default Document serialize() {
+        return encode(DocumentWriter.create()).end();
+    }
+}
@@ -0,0 +1,200 @@
+package dev.alexissdev.storage.mongo.codec;
+
+import dev.alexissdev.storage.codec.ModelCodec;
+import dev.alexissdev.storage.codec.ModelReader;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * A {@link ModelReader} reading the fields straight from a {@link BsonDocument}, without
+ * converting it to a {@link Document} first.
+ *
+ * <p>Children are read with their own {@code BsonModelReader}, so only the values read
+ * through {@link #readList(String, Class)} are converted to Java objects. Numeric fields
+ * are read regardless of their BSON numeric type, and dates can be stored either as BSON
+ * dates or as epoch milliseconds, as written by {@link ModelWriter#write(String, Date)}.
+ *
+ * <p>Over a {@link org.bson.RawBsonDocument} every read decodes only the requested field from the
+ * raw bytes, and children are read as raw documents as well, so the fields the parser never
+ * reads are never decoded. Each read scans the document from its start, which is cheap for
+ * the usual model sizes.
+ */
+
+public class BsonModelReader
+        implements ModelReader<Document> {
+
+    private static final DecoderContext DECODER_CONTEXT = DecoderContext.builder().build();
+    private static final org.bson.codecs.DocumentCodec DOCUMENT_CODEC = new org.bson.codecs.DocumentCodec();
+
+    private final BsonDocument document;
+
+    private BsonModelReader(BsonDocument document) {
+        this.document = document;
+    }
+
+    public static BsonModelReader create(BsonDocument document) {
+        return new BsonModelReader(document);
+    }
+
+    @Override
+    public Date readDate(String field) {
+        BsonValue value = document.get(field);
+        if (value == null || value.isNull()) {
+            return null;
+        }
+
+        return new Date(value.isDateTime() ? value.asDateTime().getValue() : value.asNumber().longValue());
+    }
+
+    @Override
+    public String readString(String field) {
+        BsonValue value = document.get(field);
+        if (value == null || value.isNull()) {
+            return null;
+        }
+
+        return value.asString().getValue();
+    }
+
+    @Override
+    public double readDouble(String field) {
+        return required(field).asNumber().doubleValue();
+    }
+
+    @Override
+    public long readLong(String field) {
+        return required(field).asNumber().longValue();
+    }
+
+    @Override
+    public int readInt(String field) {
+        return required(field).asNumber().intValue();
+    }
+
+    @Override
+    public boolean readBoolean(String field) {
+        return required(field).asBoolean().getValue();
+    }
+
+    @Override
+    public <T> List<T> readList(String field, Class<T> clazz) {
+        BsonValue value = document.get(field);
+        if (value == null || value.isNull()) {
+            return null;
+        }
+
+        BsonArray array = value.asArray();
+        List<T> list = new ArrayList<>(array.size());
+        for (BsonValue element : array) {
+            list.add(clazz.cast(toJava(element)));
+        }
+
+        return list;
+    }
+
+    @Override
+    public <T extends ModelCodec<Document>> @Nullable T readChild(
+            String field,
+            Function<ModelReader<Document>, T> parser
+    ) {
+        BsonValue child = document.get(field);
+
+        if (child == null || child.isNull()) {
+            return null;
+        }
+
+        return parser.apply(BsonModelReader.create(child.asDocument()));
+    }
+
+    @Override
+    public <K, V extends ModelCodec<Document>> Map<K, V> readMap(
+            String field, Function<V, K> keyParser,
+            Function<ModelReader<Document>, V> valueParser
+    ) {
+        BsonArray documents = array(field);
+        Map<K, V> map = new HashMap<>(documents.size());
+
+        for (BsonValue document : documents) {
+            V value = valueParser.apply(BsonModelReader.create(document.asDocument()));
+
+            map.put(keyParser.apply(value), value);
+        }
+
+        return map;
+    }
+
+    @Override
+    public <T extends ModelCodec<Document>> Set<T> readChildren(
+            String field,
+            Function<ModelReader<Document>, T> parser
+    ) {
+        Set<T> children = new HashSet<>();
+
+        for (BsonValue document : array(field)) {
+            children.add(parser.apply(
+                    BsonModelReader.create(document.asDocument())
+            ));
+        }
+
+        return children;
+    }
+
+    private BsonValue required(String field) {
+        BsonValue value = document.get(field);
+        if (value == null) {
+            // same as unboxing a missing value from a Document
+            throw new NullPointerException("Missing field " + field);
+        }
+
+        return value;
+    }
+
+    private BsonArray array(String field) {
+        BsonValue value = document.get(field);
+        if (value == null) {
+            throw new NullPointerException("Missing field " + field);
+        }
+
+        return value.asArray();
+    }
+
+    private static Object toJava(BsonValue value) {
+        switch (value.getBsonType()) {
+            case NULL:
+                return null;
+            case STRING:
+                return value.asString().getValue();
+            case INT32:
+                return value.asInt32().getValue();
+            case INT64:
+                return value.asInt64().getValue();
+            case DOUBLE:
+                return value.asDouble().getValue();
+            case BOOLEAN:
+                return value.asBoolean().getValue();
+            case DATE_TIME:
+                return new Date(value.asDateTime().getValue());
+            case DOCUMENT:
+                return DOCUMENT_CODEC.decode(new BsonDocumentReader(value.asDocument()), DECODER_CONTEXT);
+            default:
+                // let the driver convert any other type as it does for a Document
+                Document wrapper = DOCUMENT_CODEC.decode(
+                        new BsonDocumentReader(new BsonDocument("value", value)), DECODER_CONTEXT);
+                return wrapper.get("value");
+        }
+    }
+}
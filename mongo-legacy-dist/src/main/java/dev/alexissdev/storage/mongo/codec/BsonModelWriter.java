@@ -0,0 +1,132 @@
+package dev.alexissdev.storage.mongo.codec;
+
+import dev.alexissdev.storage.codec.ModelCodec;
+import dev.alexissdev.storage.codec.ModelWriter;
+import org.bson.BsonWriter;
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * A {@link ModelWriter} streaming the fields straight to a driver {@link BsonWriter}, without
+ * building a {@link Document} nor boxing the primitive values.
+ *
+ * <p>Children implementing {@link BsonModelCodec} are streamed as well, any other child is
+ * serialized and encoded with the codec registry, as well as the values given to
+ * {@link #writeObject(String, Object)}. The values are written with the same BSON types
+ * as the {@link DocumentWriter}, so documents written by both can be read by each other.
+ *
+ * <p>The writer doesn't start nor end the document, that's up to the caller, and
+ * {@link #end()} returns {@code null} as the document only exists in the stream.
+ */
+
+public class BsonModelWriter
+        implements ModelWriter<Document> {
+
+    private static final EncoderContext ENCODER_CONTEXT = EncoderContext.builder().build();
+
+    private final BsonWriter writer;
+    private final CodecRegistry codecRegistry;
+
+    private BsonModelWriter(BsonWriter writer, CodecRegistry codecRegistry) {
+        this.writer = writer;
+        this.codecRegistry = codecRegistry;
+    }
+
+    public static BsonModelWriter create(BsonWriter writer, CodecRegistry codecRegistry) {
+        return new BsonModelWriter(writer, codecRegistry);
+    }
+
+    @Override
+    public BsonModelWriter write(String field, UUID uuid) {
+        return write(field, uuid.toString());
+    }
+
+    @Override
+    public BsonModelWriter write(String field, String value) {
+        if (value == null) {
+            writer.writeNull(field);
+        } else {
+            writer.writeString(field, value);
+        }
+        return this;
+    }
+
+    @Override
+    public BsonModelWriter write(String field, int value) {
+        writer.writeInt32(field, value);
+        return this;
+    }
+
+    @Override
+    public BsonModelWriter write(String field, long value) {
+        writer.writeInt64(field, value);
+        return this;
+    }
+
+    @Override
+    public BsonModelWriter write(String field, double value) {
+        writer.writeDouble(field, value);
+        return this;
+    }
+
+    @Override
+    public BsonModelWriter write(String field, boolean value) {
+        writer.writeBoolean(field, value);
+        return this;
+    }
+
+    @Override
+    public BsonModelWriter writeObject(String field, Object value) {
+        writer.writeName(field);
+        writeValue(value);
+        return this;
+    }
+
+    @Override
+    public BsonModelWriter write(String field, ModelCodec<Document> child) {
+        writer.writeName(field);
+        writeChild(child);
+        return this;
+    }
+
+    @Override
+    public BsonModelWriter write(String field, Collection<? extends ModelCodec<Document>> children) {
+        writer.writeStartArray(field);
+        for (ModelCodec<Document> child : children) {
+            writeChild(child);
+        }
+        writer.writeEndArray();
+        return this;
+    }
+
+    @Override
+    public Document end() {
+        return null;
+    }
+
+    private void writeChild(ModelCodec<Document> child) {
+        if (child instanceof BsonModelCodec) {
+            writer.writeStartDocument();
+            ((BsonModelCodec) child).encode(this);
+            writer.writeEndDocument();
+        } else {
+            writeValue(child == null ? null : child.serialize());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <V> void writeValue(V value) {
+        if (value == null) {
+            writer.writeNull();
+            return;
+        }
+
+        Codec<V> codec = (Codec<V>) codecRegistry.get(value.getClass());
+        ENCODER_CONTEXT.encodeWithChildContext(codec, writer, value);
+    }
+}
@@ -0,0 +1,116 @@
+package dev.alexissdev.storage.mongo.codec;
+
+import dev.alexissdev.storage.util.WeakIdentityMap;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.Encoder;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Keeps the last known stored state of the loaded and saved models, so a save can write only the
+ * fields that changed since then.
+ *
+ * <p>Snapshots are encoded to BSON, so they don't share any nested document or list with the model
+ * and changes made in place are detected. They're compared field by field at the top level: a nested
+ * document or list that changed is set as a whole. Snapshots belong to the model instances, by identity,
+ * and are dropped once the instance is no longer used, so the memory held is about one encoded copy per
+ * live model.
+ */
+
+public class DirtyTracker {
+
+    private static final BsonDocumentCodec BSON_DOCUMENT_CODEC = new BsonDocumentCodec();
+
+    private final WeakIdentityMap<Object, RawBsonDocument> snapshots = new WeakIdentityMap<>();
+    private final Encoder<Document> documentEncoder;
+    private final Set<String> ignoredFields;
+
+    /**
+     * @param codecRegistry
+     * 	the registry used to encode the documents, the one of the collection.
+     * @param ignoredFields
+     * 	fields never tracked, such as the id or fields managed by the service.
+     */
+    public DirtyTracker(CodecRegistry codecRegistry, String... ignoredFields) {
+        this.documentEncoder = codecRegistry.get(Document.class);
+        this.ignoredFields = new HashSet<>(Arrays.asList(ignoredFields));
+    }
+
+    /**
+     * Remembers the given document as the stored state of the model. The document is encoded,
+     * so it can be modified afterwards.
+     */
+    public void track(Object model, Document document) {
+        snapshots.put(model, new RawBsonDocument(document, documentEncoder));
+    }
+
+    /**
+     * Remembers the given document, as it was read, as the stored state of the model.
+     */
+    public void track(Object model, RawBsonDocument document) {
+        snapshots.put(model, document);
+    }
+
+    public void forget(Object model) {
+        snapshots.remove(model);
+    }
+
+    /**
+     * Compares the document with the stored state of the model.
+     *
+     * @param model
+     * 	The model instance.
+     * @param document
+     * 	The current serialized state of the model.
+     *
+     * @return An update document with the {@code $set} and {@code $unset} operators for the changed
+     * fields, empty if nothing changed, or {@code null} if the stored state of the model is unknown.
+     */
+    public @Nullable Document diff(Object model, Document document) {
+        RawBsonDocument snapshot = snapshots.get(model);
+        if (snapshot == null) {
+            return null;
+        }
+
+        BsonDocument before = snapshot.decode(BSON_DOCUMENT_CODEC);
+        BsonDocument after = new RawBsonDocument(document, documentEncoder).decode(BSON_DOCUMENT_CODEC);
+
+        Document set = new Document();
+        for (Map.Entry<String, Object> entry : document.entrySet()) {
+            String field = entry.getKey();
+            if (ignoredFields.contains(field)) {
+                continue;
+            }
+
+            if (!before.containsKey(field) || !Objects.equals(before.get(field), after.get(field))) {
+                set.put(field, entry.getValue());
+            }
+        }
+
+        Document unset = new Document();
+        for (String field : before.keySet()) {
+            if (!ignoredFields.contains(field) && !document.containsKey(field)) {
+                unset.put(field, "");
+            }
+        }
+
+        Document update = new Document();
+        if (!set.isEmpty()) {
+            update.put("$set", set);
+        }
+        if (!unset.isEmpty()) {
+            update.put("$unset", unset);
+        }
+
+        return update;
+    }
+}
@@ -0,0 +1,110 @@
+package dev.alexissdev.storage.mongo.codec;
+
+import dev.alexissdev.storage.model.Model;
+import dev.alexissdev.storage.util.Validate;
+import org.bson.BsonReader;
+import org.bson.BsonWriter;
+import org.bson.codecs.RawBsonDocumentCodec;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Driver {@link Codec} for a model type implementing {@link BsonModelCodec}, so a collection of
+ * that type encodes the models with a {@link BsonModelWriter} and decodes them with the
+ * {@link MongoModelParser} over a {@link BsonModelReader}.
+ *
+ * @param <T>
+ *        The type of the model, which must implement {@link BsonModelCodec}.
+ */
+
+public class ModelBsonCodec<T extends Model & DocumentCodec>
+        implements Codec<T> {
+
+    private final Class<T> type;
+    private final MongoModelParser<T> modelParser;
+    private final CodecRegistry codecRegistry;
+    private final @Nullable String versionField;
+    private final @Nullable String expiryField;
+    private final long expireAfterMillis;
+    private final RawBsonDocumentCodec documentCodec;
+
+    /**
+     * @param type
+     * 	the type of the model, it must implement {@link BsonModelCodec}.
+     * @param modelParser
+     * 	the parser of the decoded models.
+     * @param codecRegistry
+     * 	the registry used to encode the values written as objects and the children that
+     * 	don't implement {@link BsonModelCodec}.
+     * @param versionField
+     * 	if not null, every encoded model gets a random version in that field, as the blind
+     * 	saves of the {@code MongoModelService} do.
+     */
+    public ModelBsonCodec(Class<T> type, MongoModelParser<T> modelParser,
+                          CodecRegistry codecRegistry, @Nullable String versionField) {
+        this(type, modelParser, codecRegistry, versionField, null, 0);
+    }
+
+    /**
+     * @param type
+     * 	the type of the model, it must implement {@link BsonModelCodec}.
+     * @param modelParser
+     * 	the parser of the decoded models.
+     * @param codecRegistry
+     * 	the registry used to encode the values written as objects and the children that
+     * 	don't implement {@link BsonModelCodec}.
+     * @param versionField
+     * 	if not null, every encoded model gets a random version in that field.
+     * @param expiryField
+     * 	if not null, every encoded model gets its expiry date in that field.
+     * @param expireAfterMillis
+     * 	the time after encoding at which the model expires, used with the expiry field.
+     */
+    public ModelBsonCodec(Class<T> type, MongoModelParser<T> modelParser,
+                          CodecRegistry codecRegistry, @Nullable String versionField,
+                          @Nullable String expiryField, long expireAfterMillis) {
+        Validate.state(expiryField == null || expireAfterMillis > 0, "expireAfterMillis must be positive");
+        Validate.state(BsonModelCodec.class.isAssignableFrom(type),
+                "%s doesn't implement BsonModelCodec", type.getName());
+
+        this.type = type;
+        this.modelParser = modelParser;
+        this.codecRegistry = codecRegistry;
+        this.versionField = versionField;
+        this.expiryField = expiryField;
+        this.expireAfterMillis = expireAfterMillis;
+        this.documentCodec = new RawBsonDocumentCodec();
+    }
+
+    @Override
+    public void encode(BsonWriter writer, T model, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        ((BsonModelCodec) model).encode(BsonModelWriter.create(writer, codecRegistry));
+        if (versionField != null) {
+            writer.writeInt64(versionField, ThreadLocalRandom.current().nextLong());
+        }
+        if (expiryField != null) {
+            writer.writeDateTime(expiryField, System.currentTimeMillis() + expireAfterMillis);
+        }
+        writer.writeEndDocument();
+    }
+
+    /**
+     * Decodes the model from the raw bytes of the document, so only the fields the parser reads
+     * are decoded.
+     */
+    @Override
+    public T decode(BsonReader reader, DecoderContext decoderContext) {
+        return modelParser.parse(BsonModelReader.create(documentCodec.decode(reader, decoderContext)));
+    }
+
+    @Override
+    public Class<T> getEncoderClass() {
+        return type;
+    }
+}
@@ -0,0 +1,104 @@
+package dev.alexissdev.storage.mongo.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free histogram of latencies with power of two microsecond buckets, from under a microsecond
+ * to over half an hour. Percentiles are approximated by the upper bound of their bucket, so they're
+ * accurate to a factor of two, which is enough to tell a slow collection from a healthy one.
+ */
+public final class LatencyHistogram {
+
+    private static final int BUCKETS = 32;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        buckets[bucket(value)].increment();
+        count.increment();
+        totalNanos.add(value);
+        maxNanos.accumulate(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public long getMeanNanos() {
+        long samples = getCount();
+        return samples == 0 ? 0 : getTotalNanos() / samples;
+    }
+
+    /**
+     * Returns an upper bound of the given percentile, or zero if nothing was recorded.
+     *
+     * @param percentile
+     * 	the percentile, between 0 and 100.
+     */
+    public long getPercentileNanos(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        }
+
+        long[] counts = new long[BUCKETS];
+        long samples = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            samples += counts[i];
+        }
+        if (samples == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(samples * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBoundNanos(i), getMaxNanos());
+            }
+        }
+
+        return getMaxNanos();
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram{" +
+                "count=" + getCount() +
+                ", meanMicros=" + TimeUnit.NANOSECONDS.toMicros(getMeanNanos()) +
+                ", p99Micros=" + TimeUnit.NANOSECONDS.toMicros(getPercentileNanos(99)) +
+                ", maxMicros=" + TimeUnit.NANOSECONDS.toMicros(getMaxNanos()) +
+                '}';
+    }
+
+    private static int bucket(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        // bucket i holds [2^(i-1), 2^i) microseconds, the first one less than a microsecond
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+    }
+
+    private static long upperBoundNanos(int bucket) {
+        return TimeUnit.MICROSECONDS.toNanos(1L << bucket);
+    }
+}
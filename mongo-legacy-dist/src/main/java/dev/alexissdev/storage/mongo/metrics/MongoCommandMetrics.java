@@ -0,0 +1,142 @@
+package dev.alexissdev.storage.mongo.metrics;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Default {@link MongoInstrumentation}, keeping a {@link LatencyHistogram} and counters per
+ * collection and command, and the wait times of the connection pool.
+ *
+ * <p>When a slow command threshold is set, commands slower than it are logged as warnings.
+ */
+public class MongoCommandMetrics
+        implements MongoInstrumentation {
+
+    private static final Logger LOGGER = Logger.getLogger(MongoCommandMetrics.class.getName());
+
+    private final long slowCommandNanos;
+    private final ConcurrentMap<String, ConcurrentMap<String, CommandStats>> commandStats = new ConcurrentHashMap<>();
+    private final LatencyHistogram checkoutWait = new LatencyHistogram();
+    private final LongAdder checkoutFailures = new LongAdder();
+
+    public MongoCommandMetrics() {
+        this(0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param slowCommandThreshold
+     * 	the duration from which a command is logged as slow, zero to never log them.
+     * @param unit
+     * 	the unit of the threshold.
+     */
+    public MongoCommandMetrics(long slowCommandThreshold, TimeUnit unit) {
+        this.slowCommandNanos = unit.toNanos(slowCommandThreshold);
+    }
+
+    @Override
+    public void commandSucceeded(String collection, String command, long durationNanos, int documentsReturned) {
+        CommandStats stats = stats(collection, command);
+        stats.latency.record(durationNanos);
+        stats.documentsReturned.add(documentsReturned);
+        checkSlow(collection, command, durationNanos);
+    }
+
+    @Override
+    public void commandFailed(String collection, String command, long durationNanos, Throwable failure) {
+        CommandStats stats = stats(collection, command);
+        stats.latency.record(durationNanos);
+        stats.failures.increment();
+        checkSlow(collection, command, durationNanos);
+    }
+
+    @Override
+    public void connectionCheckedOut(long waitNanos) {
+        checkoutWait.record(waitNanos);
+    }
+
+    @Override
+    public void connectionCheckOutFailed(long waitNanos) {
+        checkoutWait.record(waitNanos);
+        checkoutFailures.increment();
+    }
+
+    /**
+     * Returns the statistics of a command on a collection, or {@code null} if it never ran.
+     */
+    public @Nullable CommandStats getCommandStats(String collection, String command) {
+        Map<String, CommandStats> collectionStats = commandStats.get(collection);
+        return collectionStats == null ? null : collectionStats.get(command);
+    }
+
+    /**
+     * Returns a live view of the statistics, keyed by collection and then by command.
+     */
+    public Map<String, Map<String, CommandStats>> getCommandStats() {
+        return Collections.unmodifiableMap(commandStats);
+    }
+
+    public LatencyHistogram getCheckoutWait() {
+        return checkoutWait;
+    }
+
+    public long getCheckoutFailures() {
+        return checkoutFailures.sum();
+    }
+
+    private CommandStats stats(String collection, String command) {
+        return commandStats
+                .computeIfAbsent(collection, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(command, key -> new CommandStats());
+    }
+
+    private void checkSlow(String collection, String command, long durationNanos) {
+        if (slowCommandNanos > 0 && durationNanos >= slowCommandNanos) {
+            LOGGER.warning("Slow " + command + " on " + (collection.isEmpty() ? "database" : collection)
+                    + " took " + TimeUnit.NANOSECONDS.toMillis(durationNanos) + " ms");
+        }
+    }
+
+    /**
+     * Statistics of a command on a collection.
+     */
+    public static final class CommandStats {
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder documentsReturned = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+
+        private CommandStats() {
+        }
+
+        /**
+         * Returns the latencies of the command, failures included.
+         */
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        public long getDocumentsReturned() {
+            return documentsReturned.sum();
+        }
+
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "CommandStats{" +
+                    "latency=" + latency +
+                    ", documentsReturned=" + getDocumentsReturned() +
+                    ", failures=" + getFailures() +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package dev.alexissdev.storage.mongo.metrics;
+
+/**
+ * Receives the measures taken by a {@link MongoMetricsListener} registered in the driver.
+ *
+ * <p>It's called from the threads running the commands, so implementations must be thread safe
+ * and return quickly.
+ *
+ * @see MongoCommandMetrics
+ */
+public interface MongoInstrumentation {
+
+    /**
+     * Called when a command completes successfully.
+     *
+     * @param collection
+     * 	the collection the command ran on, empty for database commands.
+     * @param command
+     * 	the name of the command, such as {@code find} or {@code update}.
+     * @param durationNanos
+     * 	the time the command took, including the round trip.
+     * @param documentsReturned
+     * 	the documents returned in the cursor batch of the reply, zero if it has no cursor.
+     */
+    void commandSucceeded(String collection, String command, long durationNanos, int documentsReturned);
+
+    /**
+     * Called when a command fails, either with an error reply or a network error.
+     *
+     * @param collection
+     * 	the collection the command ran on, empty for database commands.
+     * @param command
+     * 	the name of the command.
+     * @param durationNanos
+     * 	the time the command took until it failed.
+     * @param failure
+     * 	the cause of the failure.
+     */
+    void commandFailed(String collection, String command, long durationNanos, Throwable failure);
+
+    /**
+     * Called when a connection is checked out of the pool.
+     *
+     * @param waitNanos
+     * 	the time waited for the connection.
+     */
+    void connectionCheckedOut(long waitNanos);
+
+    /**
+     * Called when no connection could be checked out of the pool, usually because the wait
+     * queue timed out.
+     *
+     * @param waitNanos
+     * 	the time waited until the check out failed.
+     */
+    void connectionCheckOutFailed(long waitNanos);
+}
@@ -0,0 +1,146 @@
+package dev.alexissdev.storage.mongo.metrics;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckOutStartedEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionPoolListener;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Driver listener measuring every command and connection check out, and forwarding the
+ * measures to a {@link MongoInstrumentation}.
+ *
+ * <p>Check out waits are measured per thread, which matches the blocking driver where a connection
+ * is checked out by the thread running the operation. Errors thrown by the instrumentation are
+ * logged and never reach the driver.
+ */
+public class MongoMetricsListener
+        implements CommandListener, ConnectionPoolListener {
+
+    private static final Logger LOGGER = Logger.getLogger(MongoMetricsListener.class.getName());
+
+    private final MongoInstrumentation instrumentation;
+    // collection of every running command, by request id
+    private final ConcurrentMap<Integer, String> runningCommands = new ConcurrentHashMap<>();
+    private final ThreadLocal<Long> checkoutStart = new ThreadLocal<>();
+
+    public MongoMetricsListener(MongoInstrumentation instrumentation) {
+        this.instrumentation = instrumentation;
+    }
+
+    /**
+     * Returns a copy of the given settings with this listener registered for the commands and the
+     * connection pool events.
+     */
+    public MongoClientSettings register(MongoClientSettings settings) {
+        return MongoClientSettings.builder(settings)
+                .addCommandListener(this)
+                .applyToConnectionPoolSettings(builder -> builder.addConnectionPoolListener(this))
+                .build();
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        runningCommands.put(event.getRequestId(), collection(event.getCommandName(), event.getCommand()));
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        String collection = runningCommands.remove(event.getRequestId());
+        try {
+            instrumentation.commandSucceeded(
+                    collection == null ? "" : collection,
+                    event.getCommandName(),
+                    event.getElapsedTime(TimeUnit.NANOSECONDS),
+                    documentsReturned(event.getResponse())
+            );
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Instrumentation failed to record a command", e);
+        }
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        String collection = runningCommands.remove(event.getRequestId());
+        try {
+            instrumentation.commandFailed(
+                    collection == null ? "" : collection,
+                    event.getCommandName(),
+                    event.getElapsedTime(TimeUnit.NANOSECONDS),
+                    event.getThrowable()
+            );
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Instrumentation failed to record a command", e);
+        }
+    }
+
+    @Override
+    public void connectionCheckOutStarted(ConnectionCheckOutStartedEvent event) {
+        checkoutStart.set(System.nanoTime());
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        Long start = checkoutStart.get();
+        if (start == null) {
+            return;
+        }
+
+        checkoutStart.remove();
+        try {
+            instrumentation.connectionCheckedOut(System.nanoTime() - start);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Instrumentation failed to record a check out", e);
+        }
+    }
+
+    @Override
+    public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+        Long start = checkoutStart.get();
+        if (start == null) {
+            return;
+        }
+
+        checkoutStart.remove();
+        try {
+            instrumentation.connectionCheckOutFailed(System.nanoTime() - start);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Instrumentation failed to record a check out", e);
+        }
+    }
+
+    /**
+     * Returns the collection targeted by a command: collection commands hold it as the value of
+     * the command name, except {@code getMore}, which holds it in its {@code collection} field.
+     */
+    private static String collection(String commandName, BsonDocument command) {
+        BsonValue value = command.get("getMore".equals(commandName) ? "collection" : commandName);
+        return value != null && value.isString() ? value.asString().getValue() : "";
+    }
+
+    private static int documentsReturned(BsonDocument response) {
+        BsonValue cursor = response.get("cursor");
+        if (cursor == null || !cursor.isDocument()) {
+            return 0;
+        }
+
+        BsonValue batch = cursor.asDocument().get("firstBatch");
+        if (batch == null) {
+            batch = cursor.asDocument().get("nextBatch");
+        }
+
+        return batch != null && batch.isArray() ? batch.asArray().size() : 0;
+    }
+}
@@ -0,0 +1,8 @@
+plugins {
+    id("storage.publishing-conventions")
+}
+
+dependencies {
+    api(project(":lightweight-storage-mongo-legacy-dist"))
+    api(libs.mongo.reactive.driver)
+}
@@ -0,0 +1,134 @@
+package dev.alexissdev.storage.mongo.reactive;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Bridges the {@link Publisher}s returned by the reactive driver to {@link CompletableFuture}s.
+ *
+ * <p>The futures are completed from the driver threads, and completing them exceptionally
+ * (for example when they time out or are cancelled) cancels the underlying subscription.
+ */
+final class Publishers {
+
+    private Publishers() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Subscribes to the publisher and completes with its first element, or {@code null} if it
+     * completes empty. The subscription is cancelled once the element is received.
+     */
+    static <T> CompletableFuture<T> first(Publisher<T> publisher) {
+        return collect(publisher, 1).thenApply(items -> items.isEmpty() ? null : items.get(0));
+    }
+
+    /**
+     * Subscribes to the publisher and completes with all its elements.
+     */
+    static <T> CompletableFuture<List<T>> collect(Publisher<T> publisher) {
+        return collect(publisher, Long.MAX_VALUE);
+    }
+
+    private static <T> CompletableFuture<List<T>> collect(Publisher<T> publisher, long limit) {
+        CompletableFuture<List<T>> future = new CompletableFuture<>();
+
+        publisher.subscribe(new Subscriber<T>() {
+
+            // signals are serialized by the publisher, no need to synchronize
+            private final List<T> items = new ArrayList<>();
+            private Subscription subscription;
+
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                this.subscription = subscription;
+                future.whenComplete((result, throwable) -> {
+                    if (throwable != null) {
+                        subscription.cancel();
+                    }
+                });
+                subscription.request(limit);
+            }
+
+            @Override
+            public void onNext(T item) {
+                items.add(item);
+                if (items.size() >= limit) {
+                    subscription.cancel();
+                    future.complete(items);
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                future.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                future.complete(items);
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Returns a publisher applying the mapper to every element of the source. If the mapper
+     * throws, the source is cancelled and the subscriber receives the error.
+     */
+    static <T, R> Publisher<R> map(Publisher<T> source, Function<T, R> mapper) {
+        return subscriber -> source.subscribe(new Subscriber<T>() {
+
+            private Subscription subscription;
+            private boolean done;
+
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                this.subscription = subscription;
+                subscriber.onSubscribe(subscription);
+            }
+
+            @Override
+            public void onNext(T item) {
+                if (done) {
+                    return;
+                }
+
+                R mapped;
+                try {
+                    mapped = mapper.apply(item);
+                } catch (Throwable throwable) {
+                    done = true;
+                    subscription.cancel();
+                    subscriber.onError(throwable);
+                    return;
+                }
+
+                subscriber.onNext(mapped);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                if (!done) {
+                    done = true;
+                    subscriber.onError(throwable);
+                }
+            }
+
+            @Override
+            public void onComplete() {
+                if (!done) {
+                    done = true;
+                    subscriber.onComplete();
+                }
+            }
+        });
+    }
+}
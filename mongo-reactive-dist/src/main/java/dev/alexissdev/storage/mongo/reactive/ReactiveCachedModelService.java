@@ -0,0 +1,309 @@
+package dev.alexissdev.storage.mongo.reactive;
+
+import dev.alexissdev.storage.Aggregation;
+import dev.alexissdev.storage.ModelService;
+import dev.alexissdev.storage.dist.DelegatedCachedModelService;
+import dev.alexissdev.storage.model.Model;
+import dev.alexissdev.storage.mongo.codec.DocumentCodec;
+import dev.alexissdev.storage.resolve.ResolverRegistry;
+import org.reactivestreams.Publisher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Cached service over a {@link ReactiveMongoModelService}.
+ *
+ * <p>The asynchronous operations look up and update the cache on the calling thread, and compose
+ * the futures of the reactive service for the rest, so unlike the {@link DelegatedCachedModelService}
+ * they don't wait for the reactive service on the executor. The cache is updated from the driver
+ * threads once the reactive service completes, so it must not block. The synchronous operations
+ * still wait for the reactive service.
+ *
+ * @param <T>
+ *        The type of the model managed by this service. The type must extend {@code Model}
+ *        and implement {@code DocumentCodec}.
+ */
+
+public class ReactiveCachedModelService<T extends Model & DocumentCodec>
+        extends DelegatedCachedModelService<T> {
+
+    private final ReactiveMongoModelService<T> reactiveDelegate;
+
+    protected ReactiveCachedModelService(Executor executor, long timeoutMillis,
+                                         long closeTimeoutMillis, boolean ownsExecutor,
+                                         ModelService<T> cacheModelService,
+                                         ResolverRegistry<T> resolverRegistry,
+                                         ReactiveMongoModelService<T> delegate) {
+        super(executor, timeoutMillis, closeTimeoutMillis, ownsExecutor,
+                cacheModelService, resolverRegistry, delegate);
+
+        this.reactiveDelegate = delegate;
+    }
+
+    @Override
+    public CompletableFuture<T> find(String id) {
+        return find(id, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public CompletableFuture<T> find(String id, long timeout, TimeUnit unit) {
+        return track(() -> reactiveDelegate.find(id, timeout, unit).thenApply(model -> {
+            if (model != null) {
+                // add to cache
+                cacheModelService.saveSync(model);
+            }
+
+            return model;
+        }), timeout, unit);
+    }
+
+    @Override
+    public CompletableFuture<List<T>> find(String field, String value) {
+        return find(field, value, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public CompletableFuture<List<T>> find(String field, String value, long timeout, TimeUnit unit) {
+        return track(() -> reactiveDelegate.find(field, value, timeout, unit), timeout, unit);
+    }
+
+    @Override
+    public CompletableFuture<List<T>> findAll() {
+        return findAll(model -> { });
+    }
+
+    @Override
+    public CompletableFuture<List<T>> findAll(Consumer<T> postLoadAction) {
+        return findAll(postLoadAction, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public CompletableFuture<List<T>> findAll(Consumer<T> postLoadAction, long timeout, TimeUnit unit) {
+        return track(() -> reactiveDelegate.findAll(postLoadAction, timeout, unit).thenApply(models -> {
+            for (T model : models) {
+                cacheModelService.saveSync(model);
+            }
+
+            return models;
+        }), timeout, unit);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> exists(String id) {
+        return exists(id, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Checks the cache first, and the backend only if the model isn't cached.
+     */
+    @Override
+    public CompletableFuture<Boolean> exists(String id, long timeout, TimeUnit unit) {
+        if (getSync(id) != null) {
+            return CompletableFuture.completedFuture(true);
+        }
+
+        return track(() -> reactiveDelegate.exists(id, timeout, unit), timeout, unit);
+    }
+
+    // counts and aggregations always come from the backend, the cache may hold only some models
+    @Override
+    public CompletableFuture<Long> count() {
+        return count(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public CompletableFuture<Long> count(long timeout, TimeUnit unit) {
+        return track(() -> reactiveDelegate.count(timeout, unit), timeout, unit);
+    }
+
+    @Override
+    public CompletableFuture<Long> count(String field, String value) {
+        return count(field, value, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public CompletableFuture<Long> count(String field, String value, long timeout, TimeUnit unit) {
+        return track(() -> reactiveDelegate.count(field, value, timeout, unit), timeout, unit);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Number>> aggregate(String groupField, Aggregation aggregation,
+                                                            String valueField) {
+        return aggregate(groupField, aggregation, valueField, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Number>> aggregate(String groupField, Aggregation aggregation,
+                                                            String valueField, long timeout, TimeUnit unit) {
+        return track(() -> reactiveDelegate.aggregate(groupField, aggregation, valueField, timeout, unit),
+                timeout, unit);
+    }
+
+    @Override
+    public CompletableFuture<Void> save(T model) {
+        return save(model, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public CompletableFuture<Void> save(T model, long timeout, TimeUnit unit) {
+        return track(() -> {
+            saveInCache(model);
+            return reactiveDelegate.save(model, timeout, unit);
+        }, timeout, unit);
+    }
+
+    @Override
+    public CompletableFuture<T> update(String id, UnaryOperator<T> updater) {
+        return update(id, updater, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public CompletableFuture<T> update(String id, UnaryOperator<T> updater, long timeout, TimeUnit unit) {
+        return track(() -> reactiveDelegate.update(id, updater, timeout, unit).thenApply(updated -> {
+            if (updated != null) {
+                // rebind the resolvers, the updated fields may be resolvable
+                T cached = getSync(id);
+                if (cached != null) {
+                    deleteInCache(cached);
+                }
+                saveInCache(updated);
+            }
+
+            return updated;
+        }), timeout, unit);
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(T model) {
+        return delete(model, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(T model, long timeout, TimeUnit unit) {
+        return track(() -> {
+            deleteInCache(model);
+            return reactiveDelegate.delete(model, timeout, unit);
+        }, timeout, unit);
+    }
+
+    @Override
+    public CompletableFuture<T> delete(String id) {
+        return delete(id, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public CompletableFuture<T> delete(String id, long timeout, TimeUnit unit) {
+        return track(() -> {
+            T cached = getSync(id);
+            if (cached != null) {
+                deleteInCache(cached);
+            }
+
+            return reactiveDelegate.delete(id, timeout, unit)
+                    .thenApply(deleted -> deleted != null ? deleted : cached);
+        }, timeout, unit);
+    }
+
+    @Override
+    public CompletableFuture<T> getOrFind(String id) {
+        T cached = getSync(id);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        return find(id);
+    }
+
+    @Override
+    public CompletableFuture<List<T>> getOrFind(String field, String value) {
+        List<CompletableFuture<T>> futures = new ArrayList<>();
+        for (String id : resolverRegistry.resolve(field, value)) {
+            futures.add(getOrFind(id));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .thenCompose(ignored -> {
+                    List<T> models = new ArrayList<>(futures.size());
+                    for (CompletableFuture<T> future : futures) {
+                        T model = future.join();
+                        if (model != null) {
+                            models.add(model);
+                        }
+                    }
+
+                    return models.isEmpty() ? find(field, value) : CompletableFuture.completedFuture(models);
+                });
+    }
+
+    @Override
+    public CompletableFuture<Void> upload(T model) {
+        return track(() -> {
+            deleteInCache(model);
+            return reactiveDelegate.save(model);
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Uploads the cached models with a bulk write per batch, all issued at once. The pre upload
+     * action runs on the calling thread.
+     */
+    @Override
+    public CompletableFuture<Void> uploadAll(Consumer<T> preUploadAction) {
+        return track(() -> {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (List<T> batch : partition(cacheModelService.findAllSync())) {
+                for (T model : batch) {
+                    if (preUploadAction != null) {
+                        preUploadAction.accept(model);
+                    }
+                    deleteInCache(model);
+                }
+                futures.add(reactiveDelegate.saveBatch(batch));
+            }
+
+            return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Saves the cached models with a bulk write per batch, all issued at once. The pre save action
+     * runs on the calling thread.
+     */
+    @Override
+    public CompletableFuture<Void> saveAll(Consumer<T> preSaveAction) {
+        return track(() -> {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (List<T> batch : partition(getAllSync())) {
+                if (preSaveAction != null) {
+                    for (T model : batch) {
+                        preSaveAction.accept(model);
+                    }
+                }
+                futures.add(reactiveDelegate.saveBatch(batch));
+            }
+
+            return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Publisher<T> streamAll() {
+        return Publishers.map(reactiveDelegate.streamAll(), model -> {
+            // add to cache, as findAll does
+            cacheModelService.saveSync(model);
+            return model;
+        });
+    }
+
+    @Override
+    public Publisher<T> stream(String field, String value) {
+        return reactiveDelegate.stream(field, value);
+    }
+}
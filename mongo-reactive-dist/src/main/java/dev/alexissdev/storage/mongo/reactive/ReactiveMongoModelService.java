@@ -0,0 +1,459 @@
+package dev.alexissdev.storage.mongo.reactive;
+
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.CountOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.reactivestreams.client.AggregatePublisher;
+import com.mongodb.reactivestreams.client.FindPublisher;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import dev.alexissdev.storage.Aggregation;
+import dev.alexissdev.storage.dist.RemoteModelService;
+import dev.alexissdev.storage.model.Model;
+import dev.alexissdev.storage.mongo.AggregationPipelines;
+import dev.alexissdev.storage.mongo.MongoModelService;
+import dev.alexissdev.storage.mongo.codec.DocumentCodec;
+import dev.alexissdev.storage.mongo.codec.DocumentReader;
+import dev.alexissdev.storage.mongo.codec.MongoModelParser;
+import dev.alexissdev.storage.util.Futures;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.reactivestreams.Publisher;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Non-blocking MongoDB service built on the reactive streams driver.
+ *
+ * <p>Unlike {@link MongoModelService}, the asynchronous operations don't run the blocking driver
+ * on the executor: they're issued straight to the driver and their futures are completed from its
+ * I/O threads, so thousands of concurrent operations don't need thousands of threads. The parser
+ * and the post load actions also run on those threads, so they must not block. The synchronous
+ * operations wait for the asynchronous ones.
+ *
+ * <p>Documents are read and written with the same {@link DocumentCodec}, {@link MongoModelParser}
+ * and {@value MongoModelService#VERSION_FIELD} field as {@link MongoModelService}, so both services
+ * can share a collection. With an expiry after save, writes store the expiry date in the
+ * {@value MongoModelService#EXPIRES_FIELD} field and reads skip the expired documents, also as
+ * {@link MongoModelService} does, so both services must be built with the same expiry.
+ *
+ * @param <T>
+ *        The type of the model managed by this service. The type must extend {@code Model}
+ *        and implement {@code DocumentCodec}.
+ */
+
+public class ReactiveMongoModelService<T extends Model & DocumentCodec>
+        extends RemoteModelService<T> {
+
+    private static final String VERSION_FIELD = MongoModelService.VERSION_FIELD;
+    private static final String EXPIRES_FIELD = MongoModelService.EXPIRES_FIELD;
+
+    private final MongoCollection<Document> mongoCollection;
+    private final MongoModelParser<T> mongoModelParser;
+    private final int cursorBatchSize;
+    private final long expireAfterSaveMillis;
+
+    protected ReactiveMongoModelService(Executor executor, long timeoutMillis,
+                                        long closeTimeoutMillis, boolean ownsExecutor,
+                                        MongoCollection<Document> mongoCollection,
+                                        MongoModelParser<T> mongoModelParser,
+                                        int cursorBatchSize,
+                                        long expireAfterSaveMillis) {
+        super(executor, timeoutMillis, closeTimeoutMillis, ownsExecutor);
+
+        this.mongoCollection = mongoCollection;
+        this.mongoModelParser = mongoModelParser;
+        this.cursorBatchSize = cursorBatchSize;
+        this.expireAfterSaveMillis = expireAfterSaveMillis;
+    }
+
+    public static <T extends Model & DocumentCodec> ReactiveMongoModelServiceBuilder<T> builder(Class<T> type) {
+        return new ReactiveMongoModelServiceBuilder<>(type);
+    }
+
+    @Override
+    public CompletableFuture<T> find(String id) {
+        return find(id, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public CompletableFuture<T> find(String id, long timeout, TimeUnit unit) {
+        return track(() -> Publishers
+                .first(bounded(mongoCollection.find(live(Filters.eq("_id", id))), timeout, unit).first())
+                .thenApply(this::parse), timeout, unit);
+    }
+
+    @Override
+    public CompletableFuture<List<T>> find(String field, String value) {
+        return find(field, value, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public CompletableFuture<List<T>> find(String field, String value, long timeout, TimeUnit unit) {
+        return track(() -> Publishers
+                .collect(bounded(mongoCollection.find(live(Filters.eq(field, value))), timeout, unit))
+                .thenApply(documents -> parseAll(documents, null)), timeout, unit);
+    }
+
+    @Override
+    public CompletableFuture<List<T>> findAll() {
+        return findAll(model -> { });
+    }
+
+    @Override
+    public CompletableFuture<List<T>> findAll(Consumer<T> postLoadAction) {
+        return findAll(postLoadAction, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public CompletableFuture<List<T>> findAll(Consumer<T> postLoadAction, long timeout, TimeUnit unit) {
+        return track(() -> Publishers
+                .collect(bounded(mongoCollection.find(live(new Document())), timeout, unit))
+                .thenApply(documents -> parseAll(documents, postLoadAction)), timeout, unit);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> exists(String id) {
+        return exists(id, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> exists(String id, long timeout, TimeUnit unit) {
+        return track(() -> Publishers
+                .first(mongoCollection.countDocuments(live(Filters.eq("_id", id)), countOptions(timeout, unit).limit(1)))
+                .thenApply(count -> count != null && count > 0), timeout, unit);
+    }
+
+    @Override
+    public CompletableFuture<Long> count() {
+        return count(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public CompletableFuture<Long> count(long timeout, TimeUnit unit) {
+        return track(() -> Publishers
+                .first(mongoCollection.countDocuments(live(new Document()), countOptions(timeout, unit))), timeout, unit);
+    }
+
+    @Override
+    public CompletableFuture<Long> count(String field, String value) {
+        return count(field, value, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public CompletableFuture<Long> count(String field, String value, long timeout, TimeUnit unit) {
+        return track(() -> Publishers
+                .first(mongoCollection.countDocuments(live(Filters.eq(field, value)), countOptions(timeout, unit))),
+                timeout, unit);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Number>> aggregate(String groupField, Aggregation aggregation,
+                                                            String valueField) {
+        return aggregate(groupField, aggregation, valueField, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Computes the aggregation server side, see {@link MongoModelService#aggregateSync(String, Aggregation, String)}.
+     */
+    @Override
+    public CompletableFuture<Map<String, Number>> aggregate(String groupField, Aggregation aggregation,
+                                                            String valueField, long timeout, TimeUnit unit) {
+        return track(() -> {
+            List<Bson> pipeline = new ArrayList<>();
+            if (expireAfterSaveMillis > 0) {
+                pipeline.add(Aggregates.match(live(new Document())));
+            }
+            pipeline.addAll(AggregationPipelines.group(groupField, aggregation, valueField));
+
+            AggregatePublisher<Document> publisher = mongoCollection
+                    .aggregate(pipeline)
+                    .allowDiskUse(true);
+            if (timeout > 0) {
+                publisher = publisher.maxTime(timeout, unit);
+            }
+
+            return Publishers.collect(publisher).thenApply(AggregationPipelines::results);
+        }, timeout, unit);
+    }
+
+    @Override
+    public CompletableFuture<Void> save(T model) {
+        return save(model, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public CompletableFuture<Void> save(T model, long timeout, TimeUnit unit) {
+        return track(() -> Publishers
+                .first(mongoCollection.replaceOne(
+                        Filters.eq("_id", model.getId()),
+                        serialize(model),
+                        new ReplaceOptions().upsert(true)
+                ))
+                .thenApply(result -> (Void) null), timeout, unit);
+    }
+
+    /**
+     * Saves all the given models with a single unordered bulk write.
+     */
+    public CompletableFuture<Void> saveBatch(Collection<T> models) {
+        return saveBatch(models, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public CompletableFuture<Void> saveBatch(Collection<T> models, long timeout, TimeUnit unit) {
+        if (models.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        List<WriteModel<Document>> writes = new ArrayList<>(models.size());
+        for (T model : models) {
+            writes.add(new ReplaceOneModel<>(
+                    Filters.eq("_id", model.getId()),
+                    serialize(model),
+                    new ReplaceOptions().upsert(true)
+            ));
+        }
+
+        return track(() -> Publishers
+                .first(mongoCollection.bulkWrite(writes, new BulkWriteOptions().ordered(false)))
+                .thenApply(result -> (Void) null), timeout, unit);
+    }
+
+    @Override
+    public CompletableFuture<T> update(String id, UnaryOperator<T> updater) {
+        return update(id, updater, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Applies the updater with optimistic concurrency, as {@link MongoModelService} does. Conflicting
+     * updates are retried after a jittered backoff that doesn't hold any thread.
+     */
+    @Override
+    public CompletableFuture<T> update(String id, UnaryOperator<T> updater, long timeout, TimeUnit unit) {
+        return track(() -> update(id, updater, 1), timeout, unit);
+    }
+
+    private CompletableFuture<T> update(String id, UnaryOperator<T> updater, int attempt) {
+        return Publishers.first(mongoCollection.find(live(Filters.eq("_id", id))).first())
+                .thenCompose(document -> {
+                    if (document == null) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+
+                    Object version = document.get(VERSION_FIELD);
+                    T updated = updater.apply(parse(document));
+
+                    Document replacement = updated.serialize();
+                    replacement.put(VERSION_FIELD, version instanceof Long ? (Long) version + 1 : 1L);
+                    expiring(replacement);
+
+                    Bson filter = Filters.and(
+                            Filters.eq("_id", id),
+                            version == null ? Filters.exists(VERSION_FIELD, false) : Filters.eq(VERSION_FIELD, version)
+                    );
+
+                    return Publishers.first(mongoCollection.replaceOne(filter, replacement))
+                            .thenCompose(result -> {
+                                if (result.getMatchedCount() == 1) {
+                                    return CompletableFuture.completedFuture(updated);
+                                }
+
+                                return retryOnConflict(attempt, "update", id,
+                                        () -> update(id, updater, attempt + 1));
+                            });
+                });
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(T model) {
+        return delete(model, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(T model, long timeout, TimeUnit unit) {
+        return track(() -> Publishers
+                .first(mongoCollection.deleteOne(Filters.eq("_id", model.getId())))
+                .thenApply(result -> (Void) null), timeout, unit);
+    }
+
+    @Override
+    public CompletableFuture<T> delete(String id) {
+        return delete(id, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public CompletableFuture<T> delete(String id, long timeout, TimeUnit unit) {
+        return track(() -> Publishers
+                .first(mongoCollection.findOneAndDelete(live(Filters.eq("_id", id))))
+                .thenApply(this::parse), timeout, unit);
+    }
+
+    /**
+     * Streams the models straight from a driver cursor, fetching a new batch as the subscriber
+     * requests more models.
+     */
+    @Override
+    public Publisher<T> streamAll() {
+        return Publishers.map(mongoCollection.find(live(new Document())).batchSize(cursorBatchSize), this::parse);
+    }
+
+    @Override
+    public Publisher<T> stream(String field, String value) {
+        return Publishers.map(
+                mongoCollection.find(live(Filters.eq(field, value))).batchSize(cursorBatchSize),
+                this::parse
+        );
+    }
+
+    @Override
+    public @Nullable T findSync(@NotNull String id) {
+        return await(find(id, syncTimeoutMillis(), TimeUnit.MILLISECONDS));
+    }
+
+    @Override
+    public List<T> findSync(@NotNull String field, @NotNull String value) {
+        return await(find(field, value, syncTimeoutMillis(), TimeUnit.MILLISECONDS));
+    }
+
+    @Override
+    public List<T> findAllSync(@NotNull Consumer<T> postLoadAction) {
+        return await(findAll(postLoadAction, syncTimeoutMillis(), TimeUnit.MILLISECONDS));
+    }
+
+    @Override
+    public boolean existsSync(@NotNull String id) {
+        return await(exists(id, syncTimeoutMillis(), TimeUnit.MILLISECONDS));
+    }
+
+    @Override
+    public long countSync() {
+        return await(count(syncTimeoutMillis(), TimeUnit.MILLISECONDS));
+    }
+
+    @Override
+    public long countSync(@NotNull String field, @NotNull String value) {
+        return await(count(field, value, syncTimeoutMillis(), TimeUnit.MILLISECONDS));
+    }
+
+    @Override
+    public Map<String, Number> aggregateSync(@NotNull String groupField, @NotNull Aggregation aggregation,
+                                             @Nullable String valueField) {
+        return await(aggregate(groupField, aggregation, valueField, syncTimeoutMillis(), TimeUnit.MILLISECONDS));
+    }
+
+    @Override
+    public void saveSync(@NotNull T model) {
+        await(save(model, syncTimeoutMillis(), TimeUnit.MILLISECONDS));
+    }
+
+    @Override
+    public void saveBatchSync(@NotNull Collection<T> models) {
+        await(saveBatch(models, syncTimeoutMillis(), TimeUnit.MILLISECONDS));
+    }
+
+    @Override
+    public @Nullable T updateSync(@NotNull String id, @NotNull UnaryOperator<T> updater) {
+        return await(update(id, updater, syncTimeoutMillis(), TimeUnit.MILLISECONDS));
+    }
+
+    @Override
+    public void deleteSync(@NotNull T model) {
+        await(delete(model, syncTimeoutMillis(), TimeUnit.MILLISECONDS));
+    }
+
+    @Override
+    public T deleteSync(@NotNull String id) {
+        return await(delete(id, syncTimeoutMillis(), TimeUnit.MILLISECONDS));
+    }
+
+    private FindPublisher<Document> bounded(FindPublisher<Document> publisher, long timeout, TimeUnit unit) {
+        return timeout > 0 ? publisher.maxTime(timeout, unit) : publisher;
+    }
+
+    private CountOptions countOptions(long timeout, TimeUnit unit) {
+        CountOptions options = new CountOptions();
+        return timeout > 0 ? options.maxTime(timeout, unit) : options;
+    }
+
+    private @Nullable T parse(@Nullable Document document) {
+        if (document == null) {
+            return null;
+        }
+
+        return mongoModelParser.parse(DocumentReader.create(document));
+    }
+
+    private List<T> parseAll(List<Document> documents, @Nullable Consumer<T> postLoadAction) {
+        List<T> models = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            T model = parse(document);
+
+            if (postLoadAction != null) {
+                postLoadAction.accept(model);
+            }
+            models.add(model);
+        }
+
+        return models;
+    }
+
+    private Document serialize(T model) {
+        Document document = model.serialize();
+        document.put(VERSION_FIELD, ThreadLocalRandom.current().nextLong());
+        expiring(document);
+        return document;
+    }
+
+    private void expiring(Document document) {
+        if (expireAfterSaveMillis > 0) {
+            document.put(EXPIRES_FIELD, new Date(System.currentTimeMillis() + expireAfterSaveMillis));
+        }
+    }
+
+    /**
+     * Excludes the expired documents the server didn't purge yet, as the TTL monitor only runs
+     * once a minute.
+     */
+    private Bson live(Bson filter) {
+        if (expireAfterSaveMillis <= 0) {
+            return filter;
+        }
+
+        return Filters.and(filter, Filters.not(Filters.lte(EXPIRES_FIELD, new Date())));
+    }
+
+    /**
+     * Returns the deadline of a synchronous call: the remaining time of the calling operation
+     * if it's running inside one, or the service timeout otherwise.
+     */
+    private long syncTimeoutMillis() {
+        return Futures.remainingMillis(timeoutMillis);
+    }
+
+    private static <R> R await(CompletableFuture<R> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package dev.alexissdev.storage.mongo.reactive;
+
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import dev.alexissdev.storage.ModelService;
+import dev.alexissdev.storage.builder.LayoutModelServiceBuilder;
+import dev.alexissdev.storage.model.Model;
+import dev.alexissdev.storage.mongo.MongoModelService;
+import dev.alexissdev.storage.mongo.codec.DocumentCodec;
+import dev.alexissdev.storage.mongo.codec.MongoModelParser;
+import dev.alexissdev.storage.util.Validate;
+import org.bson.Document;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Builder class for creating a {@link ReactiveMongoModelService} over a reactive streams
+ * {@code MongoDatabase}, configured as the {@code MongoModelServiceBuilder}.
+ *
+ * <p>The executor is only used when a cached service is set, by the synchronous operations of the
+ * {@link ReactiveCachedModelService} wrapping the reactive service. Its asynchronous operations
+ * compose the futures of the reactive service, so they don't hold any executor thread.
+ *
+ * @param <T> the type of the model being managed by the service
+ */
+
+public class ReactiveMongoModelServiceBuilder<T extends Model & DocumentCodec>
+        extends LayoutModelServiceBuilder<T, ReactiveMongoModelServiceBuilder<T>> {
+
+    private static final Logger LOGGER = Logger.getLogger(ReactiveMongoModelServiceBuilder.class.getName());
+
+    private MongoDatabase database;
+    private String collectionName;
+    private MongoModelParser<T> modelParser;
+    private int cursorBatchSize = 100;
+    private int expireAfterSave;
+
+    protected ReactiveMongoModelServiceBuilder(Class<T> type) {
+        super(type);
+    }
+
+    public ReactiveMongoModelServiceBuilder<T> database(MongoDatabase database) {
+        this.database = database;
+        return this;
+    }
+
+    public ReactiveMongoModelServiceBuilder<T> modelParser(MongoModelParser<T> modelParser) {
+        this.modelParser = modelParser;
+        return this;
+    }
+
+    public ReactiveMongoModelServiceBuilder<T> collection(String collection) {
+        this.collectionName = collection;
+        return this;
+    }
+
+    /**
+     * Sets how many documents are fetched per round trip when the models are streamed.
+     *
+     * @param cursorBatchSize the cursor batch size, must be positive
+     * @return the current builder instance
+     */
+    public ReactiveMongoModelServiceBuilder<T> cursorBatchSize(int cursorBatchSize) {
+        this.cursorBatchSize = cursorBatchSize;
+        return this;
+    }
+
+    /**
+     * Sets how long the models live after their last save, as the {@code MongoModelServiceBuilder}
+     * does. A collection shared with a {@link MongoModelService} must use the same expiry in both.
+     *
+     * @param expireAfterSave the seconds a model lives after being saved, zero or less to never expire
+     * @return the current builder instance
+     */
+    public ReactiveMongoModelServiceBuilder<T> expireAfterSave(int expireAfterSave) {
+        this.expireAfterSave = expireAfterSave;
+        return this;
+    }
+
+    @Override
+    public ModelService<T> build() {
+        check();
+        Validate.notNull(modelParser, "modelParser");
+        Validate.notNull(database, "database");
+        Validate.notNull(collectionName, "collectionName");
+        Validate.state(cursorBatchSize > 0, "cursorBatchSize must be positive");
+
+        MongoCollection<Document> collection = database.getCollection(collectionName);
+        long expireAfterSaveMillis = expireAfterSave > 0 ? TimeUnit.SECONDS.toMillis(expireAfterSave) : 0;
+        if (expireAfterSaveMillis > 0) {
+            // created in the background, the service can be used meanwhile
+            Publishers.first(collection.createIndex(
+                    Indexes.ascending(MongoModelService.EXPIRES_FIELD),
+                    new IndexOptions().expireAfter(0L, TimeUnit.SECONDS).background(true)
+            )).whenComplete((name, throwable) -> {
+                if (throwable != null) {
+                    // an existing index on the field without TTL conflicts with it
+                    LOGGER.log(Level.WARNING, "Could not create the TTL index of "
+                            + MongoModelService.EXPIRES_FIELD, throwable);
+                }
+            });
+        }
+
+        ReactiveMongoModelService<T> modelService = new ReactiveMongoModelService<>(
+                executor, timeoutMillis, closeTimeoutMillis,
+                ownsExecutor && cacheModelService == null,
+                collection, modelParser, cursorBatchSize, expireAfterSaveMillis
+        );
+        if (cacheModelService == null) {
+            return modelService;
+        }
+
+        return new ReactiveCachedModelService<>(
+                executor, timeoutMillis, closeTimeoutMillis, ownsExecutor,
+                cacheModelService, resolverRegistry, modelService
+        );
+    }
+
+    @Override
+    protected ReactiveMongoModelServiceBuilder<T> back() {
+        return this;
+    }
+}
@@ -3,6 +3,6 @@ plugins {
 }
 
 dependencies {
-    api(project(":lightweight-storage-api"))
+    api(project(":lightweight-storage-api-codec"))
     api(libs.jedis)
 }
\ No newline at end of file
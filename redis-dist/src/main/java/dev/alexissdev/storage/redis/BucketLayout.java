@@ -0,0 +1,258 @@
+package dev.alexissdev.storage.redis;
+
+import dev.alexissdev.storage.redis.connection.RedisBatch;
+import dev.alexissdev.storage.redis.connection.RedisCache;
+import org.jetbrains.annotations.Nullable;
+import redis.clients.jedis.Response;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Stores the models as the fields of a fixed number of small hashes, {@code name:table@bucket},
+ * choosing the bucket of a model from its id with {@link RedisCache#bucketOf(String, int)}.
+ *
+ * <p>Buckets small enough to stay under {@code hash-max-listpack-entries} keep the compact
+ * listpack encoding, which takes several times less memory than the hashtable encoding of a
+ * single large hash. Every save resets the expiration of the bucket of the model, so models
+ * expire along with their bucket. Buckets are meant for a single Redis server: indexed saves
+ * write a bucket and the index keys of the table in the same script, so they can't be spread
+ * over the shards of a cluster.
+ *
+ * <p>Operations over several models send the commands of all their buckets in a single pipeline.
+ */
+final class BucketLayout
+        implements RedisLayout {
+
+    private final RedisCache redisCache;
+    private final String tableName;
+    private final int buckets;
+    private final int expireAfterSave;
+    private final boolean sliding;
+    private final int scanCount;
+
+    BucketLayout(RedisCache redisCache, String tableName, int buckets, int expireAfterSave,
+            boolean sliding, int scanCount
+    ) {
+        this.redisCache = redisCache;
+        this.tableName = tableName;
+        this.buckets = buckets;
+        this.expireAfterSave = expireAfterSave;
+        this.sliding = sliding;
+        this.scanCount = scanCount;
+    }
+
+    @Override
+    public @Nullable byte[] get(String id) {
+        if (sliding) {
+            return redisCache.getAndTouch(bucket(id), id, expireAfterSave);
+        }
+
+        return redisCache.getBytes(bucket(id), id);
+    }
+
+    @Override
+    public void set(String id, byte[] value) {
+        redisCache.set(bucket(id), id, value, expireAfterSave);
+    }
+
+    @Override
+    public void setIndexed(String id, byte[] value, String index) {
+        // every save refreshes the whole bucket, so an index key could expire while its models are
+        // still there, they don't expire and the ids are pruned instead
+        redisCache.setIndexed(tableName, RedisCache.bucketOf(id, buckets), id, value, expireAfterSave,
+                index, -1);
+    }
+
+    @Override
+    public long pruneIndex(Collection<String> ids) {
+        Map<String, String> containers = new LinkedHashMap<>();
+        for (String id : ids) {
+            containers.put(id, redisCache.makeTable(bucket(id)));
+        }
+
+        return redisCache.pruneIndex(tableName, containers, true);
+    }
+
+    @Override
+    public boolean compareAndSet(String id, byte[] expected, byte[] value) {
+        return redisCache.compareAndSet(bucket(id), id, expected, value, expireAfterSave);
+    }
+
+    @Override
+    public void delete(String id) {
+        redisCache.del(bucket(id), id);
+    }
+
+    @Override
+    public boolean compareAndDelete(String id, byte[] expected) {
+        return redisCache.compareAndDel(bucket(id), id, expected);
+    }
+
+    /**
+     * Reads the ids of every bucket with a {@code HMGET}, all of them in a single pipeline.
+     * Sliding expirations aren't refreshed by batch reads.
+     */
+    @Override
+    public List<byte[]> getMany(List<String> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Map<String, List<String>> byBucket = byBucket(ids);
+        Map<String, Response<List<byte[]>>> responses = new LinkedHashMap<>();
+        try (RedisBatch batch = redisCache.batch()) {
+            for (Map.Entry<String, List<String>> bucket : byBucket.entrySet()) {
+                responses.put(bucket.getKey(), batch.getMany(bucket.getKey(), bucket.getValue()));
+            }
+            batch.sync();
+        }
+
+        Map<String, byte[]> values = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> bucket : byBucket.entrySet()) {
+            List<byte[]> bucketValues = responses.get(bucket.getKey()).get();
+            for (int i = 0; i < bucketValues.size(); i++) {
+                values.put(bucket.getValue().get(i), bucketValues.get(i));
+            }
+        }
+
+        List<byte[]> ordered = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            ordered.add(values.get(id));
+        }
+
+        return ordered;
+    }
+
+    @Override
+    public void setMany(Map<String, byte[]> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+
+        Map<String, Map<String, byte[]>> byBucket = new LinkedHashMap<>();
+        for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+            byBucket.computeIfAbsent(bucket(entry.getKey()), bucket -> new LinkedHashMap<>())
+                    .put(entry.getKey(), entry.getValue());
+        }
+
+        try (RedisBatch batch = redisCache.batch()) {
+            for (Map.Entry<String, Map<String, byte[]>> bucket : byBucket.entrySet()) {
+                batch.setMany(bucket.getKey(), bucket.getValue(), expireAfterSave);
+            }
+        }
+    }
+
+    @Override
+    public void deleteMany(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        try (RedisBatch batch = redisCache.batch()) {
+            for (Map.Entry<String, List<String>> bucket : byBucket(ids).entrySet()) {
+                batch.delMany(bucket.getKey(), bucket.getValue());
+            }
+        }
+    }
+
+    @Override
+    public boolean exists(String id) {
+        return redisCache.exists(bucket(id), id);
+    }
+
+    /**
+     * Sums the {@code HLEN} of every bucket, all of them in a single pipeline.
+     */
+    @Override
+    public long count() {
+        List<Response<Long>> sizes = new ArrayList<>(buckets);
+        try (RedisBatch batch = redisCache.batch()) {
+            for (int bucket = 0; bucket < buckets; bucket++) {
+                sizes.add(batch.size(redisCache.makeBucket(tableName, bucket)));
+            }
+            batch.sync();
+        }
+
+        long count = 0;
+        for (Response<Long> size : sizes) {
+            count += size.get();
+        }
+
+        return count;
+    }
+
+    @Override
+    public Iterator<byte[]> iterate() {
+        return new Iterator<byte[]>() {
+            private final Iterator<List<byte[]>> chunks = chunks();
+            private Iterator<byte[]> chunk = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!chunk.hasNext() && chunks.hasNext()) {
+                    chunk = chunks.next().iterator();
+                }
+
+                return chunk.hasNext();
+            }
+
+            @Override
+            public byte[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                return chunk.next();
+            }
+        };
+    }
+
+    /**
+     * Scans the buckets one after another, each with {@code HSCAN}.
+     */
+    @Override
+    public Iterator<List<byte[]>> chunks() {
+        return new Iterator<List<byte[]>>() {
+            private int bucket;
+            private Iterator<List<byte[]>> chunks = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!chunks.hasNext() && bucket < buckets) {
+                    chunks = redisCache.iterateChunks(redisCache.makeBucket(tableName, bucket++), scanCount);
+                }
+
+                return chunks.hasNext();
+            }
+
+            @Override
+            public List<byte[]> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                return chunks.next();
+            }
+        };
+    }
+
+    private String bucket(String id) {
+        return redisCache.makeBucket(tableName, RedisCache.bucketOf(id, buckets));
+    }
+
+    private Map<String, List<String>> byBucket(Collection<String> ids) {
+        Map<String, List<String>> byBucket = new LinkedHashMap<>();
+        for (String id : ids) {
+            byBucket.computeIfAbsent(bucket(id), bucket -> new ArrayList<>()).add(id);
+        }
+
+        return byBucket;
+    }
+}
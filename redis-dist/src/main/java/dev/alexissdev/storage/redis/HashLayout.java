@@ -0,0 +1,117 @@
+package dev.alexissdev.storage.redis;
+
+import dev.alexissdev.storage.redis.connection.RedisCache;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores the models as the fields of the {@code name:table} hash. Every save resets the
+ * expiration of the whole hash, so models never expire on their own. With a sliding expiration,
+ * finding a model by its id also resets it, so only tables left idle expire.
+ */
+final class HashLayout
+        implements RedisLayout {
+
+    private final RedisCache redisCache;
+    private final String tableName;
+    private final int expireAfterSave;
+    private final boolean sliding;
+    private final int scanCount;
+
+    HashLayout(RedisCache redisCache, String tableName, int expireAfterSave,
+            boolean sliding, int scanCount
+    ) {
+        this.redisCache = redisCache;
+        this.tableName = tableName;
+        this.expireAfterSave = expireAfterSave;
+        this.sliding = sliding;
+        this.scanCount = scanCount;
+    }
+
+    @Override
+    public @Nullable byte[] get(String id) {
+        if (sliding) {
+            return redisCache.getAndTouch(tableName, id, expireAfterSave);
+        }
+
+        return redisCache.getBytes(tableName, id);
+    }
+
+    @Override
+    public void set(String id, byte[] value) {
+        redisCache.set(tableName, id, value, expireAfterSave);
+    }
+
+    @Override
+    public void setIndexed(String id, byte[] value, String index) {
+        // every save refreshes the whole hash, so an index key could expire while its models are still
+        // there, they don't expire and the ids are pruned instead
+        redisCache.setIndexed(tableName, id, value, expireAfterSave, index, -1);
+    }
+
+    @Override
+    public long pruneIndex(Collection<String> ids) {
+        String table = redisCache.makeTable(tableName);
+        Map<String, String> containers = new LinkedHashMap<>();
+        for (String id : ids) {
+            containers.put(id, table);
+        }
+
+        return redisCache.pruneIndex(tableName, containers, true);
+    }
+
+    @Override
+    public boolean compareAndSet(String id, byte[] expected, byte[] value) {
+        return redisCache.compareAndSet(tableName, id, expected, value, expireAfterSave);
+    }
+
+    @Override
+    public void delete(String id) {
+        redisCache.del(tableName, id);
+    }
+
+    @Override
+    public boolean compareAndDelete(String id, byte[] expected) {
+        return redisCache.compareAndDel(tableName, id, expected);
+    }
+
+    @Override
+    public List<byte[]> getMany(List<String> ids) {
+        return redisCache.getMany(tableName, ids);
+    }
+
+    @Override
+    public void setMany(Map<String, byte[]> values) {
+        redisCache.setMany(tableName, values, expireAfterSave);
+    }
+
+    @Override
+    public void deleteMany(Collection<String> ids) {
+        redisCache.delMany(tableName, ids);
+    }
+
+    @Override
+    public boolean exists(String id) {
+        return redisCache.exists(tableName, id);
+    }
+
+    @Override
+    public long count() {
+        return redisCache.size(tableName);
+    }
+
+    @Override
+    public Iterator<byte[]> iterate() {
+        return redisCache.iterateBytes(tableName, scanCount);
+    }
+
+    @Override
+    public Iterator<List<byte[]>> chunks() {
+        return redisCache.iterateChunks(tableName, scanCount);
+    }
+}
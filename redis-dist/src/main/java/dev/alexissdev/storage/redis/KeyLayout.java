@@ -0,0 +1,114 @@
+package dev.alexissdev.storage.redis;
+
+import dev.alexissdev.storage.redis.connection.RedisCache;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores every model in a key of its own, {@code name:table:id}, written with {@code SET EX}
+ * so each model expires independently of the rest of the table.
+ *
+ * <p>With a sliding expiration, finding a model by its id also refreshes its expiration with
+ * {@code GETEX}, so only the models left idle for the whole period leave Redis. Listing and
+ * counting the table scan the keyspace and don't refresh any expiration.
+ */
+final class KeyLayout
+        implements RedisLayout {
+
+    private final RedisCache redisCache;
+    private final String tableName;
+    private final int expireAfterSave;
+    private final boolean sliding;
+    private final int scanCount;
+
+    KeyLayout(RedisCache redisCache, String tableName, int expireAfterSave,
+            boolean sliding, int scanCount
+    ) {
+        this.redisCache = redisCache;
+        this.tableName = tableName;
+        this.expireAfterSave = expireAfterSave;
+        this.sliding = sliding;
+        this.scanCount = scanCount;
+    }
+
+    @Override
+    public @Nullable byte[] get(String id) {
+        return redisCache.getEntry(tableName, id, sliding ? expireAfterSave : -1);
+    }
+
+    @Override
+    public void set(String id, byte[] value) {
+        redisCache.setEntry(tableName, id, value, expireAfterSave);
+    }
+
+    @Override
+    public void setIndexed(String id, byte[] value, String index) {
+        // sliding reads refresh the entry but not its index keys, so these don't expire
+        redisCache.setEntryIndexed(tableName, id, value, expireAfterSave, index, sliding ? -1 : expireAfterSave);
+    }
+
+    @Override
+    public long pruneIndex(Collection<String> ids) {
+        Map<String, String> containers = new LinkedHashMap<>();
+        for (String id : ids) {
+            containers.put(id, redisCache.makeEntry(tableName, id));
+        }
+
+        return redisCache.pruneIndex(tableName, containers, false);
+    }
+
+    @Override
+    public boolean compareAndSet(String id, byte[] expected, byte[] value) {
+        return redisCache.compareAndSetEntry(tableName, id, expected, value, expireAfterSave);
+    }
+
+    @Override
+    public void delete(String id) {
+        redisCache.delEntry(tableName, id);
+    }
+
+    @Override
+    public boolean compareAndDelete(String id, byte[] expected) {
+        return redisCache.compareAndDelEntry(tableName, id, expected);
+    }
+
+    @Override
+    public List<byte[]> getMany(List<String> ids) {
+        return redisCache.getEntries(tableName, ids, sliding ? expireAfterSave : -1);
+    }
+
+    @Override
+    public void setMany(Map<String, byte[]> values) {
+        redisCache.setEntries(tableName, values, expireAfterSave);
+    }
+
+    @Override
+    public void deleteMany(Collection<String> ids) {
+        redisCache.delEntries(tableName, ids);
+    }
+
+    @Override
+    public boolean exists(String id) {
+        return redisCache.existsEntry(tableName, id);
+    }
+
+    @Override
+    public long count() {
+        return redisCache.countEntries(tableName, scanCount);
+    }
+
+    @Override
+    public Iterator<byte[]> iterate() {
+        return redisCache.iterateEntries(tableName, scanCount);
+    }
+
+    @Override
+    public Iterator<List<byte[]>> chunks() {
+        return redisCache.iterateEntryChunks(tableName, scanCount);
+    }
+}
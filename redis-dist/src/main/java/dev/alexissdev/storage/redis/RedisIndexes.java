@@ -0,0 +1,148 @@
+package dev.alexissdev.storage.redis;
+
+import com.google.gson.Gson;
+import dev.alexissdev.storage.model.Model;
+import dev.alexissdev.storage.redis.connection.RedisCache;
+import dev.alexissdev.storage.resolve.FieldExtractor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Secondary indexes of the models of a table, kept by Redis: a set of ids per value of every
+ * indexed field, and a sorted set of ids scored by every numeric indexed field.
+ *
+ * <p>The indexes are updated after the models are written, so they may briefly point to models
+ * that no longer match, or that have expired. The queries check every model they load against
+ * the indexed field, and prune the ids of the models that don't exist anymore. The index keys
+ * only expire when every model has its own key and reads don't refresh its expiration: a hash or
+ * a bucket is refreshed by every save, so it may outlive the index keys of its models. Otherwise,
+ * and for the ids of the models that expired on their own, ids are left until they're queried
+ * or the index is purged with
+ * {@link RedisModelService#purgeIndexSync()}.
+ */
+public final class RedisIndexes<T extends Model> {
+
+    private static final Gson GSON = new Gson();
+
+    private final RedisCache redisCache;
+    private final String tableName;
+    private final int indexExpireAfter;
+    private final boolean expiring;
+    private final Map<String, FieldExtractor<T>> valueFields;
+    private final Map<String, ToDoubleFunction<T>> rangeFields;
+
+    RedisIndexes(RedisCache redisCache, String tableName, int indexExpireAfter, boolean expiring,
+            Map<String, FieldExtractor<T>> valueFields,
+            Map<String, ToDoubleFunction<T>> rangeFields
+    ) {
+        this.redisCache = redisCache;
+        this.tableName = tableName;
+        this.indexExpireAfter = indexExpireAfter;
+        this.expiring = expiring;
+        this.valueFields = valueFields;
+        this.rangeFields = rangeFields;
+    }
+
+    /**
+     * Returns whether the models expire, so the indexes may point to models that don't exist anymore.
+     */
+    boolean isExpiring() {
+        return expiring;
+    }
+
+    boolean isIndexed(String field) {
+        return valueFields.containsKey(field);
+    }
+
+    boolean isRangeIndexed(String field) {
+        return rangeFields.containsKey(field);
+    }
+
+    /**
+     * Returns the JSON of the index keys of a model, as expected by {@link RedisCache#reindex(String, Map, long)}.
+     * Fields with a null value aren't indexed.
+     */
+    String index(T model) {
+        IndexKeys keys = new IndexKeys();
+        for (Map.Entry<String, FieldExtractor<T>> field : valueFields.entrySet()) {
+            String value = field.getValue().apply(model);
+            if (value != null) {
+                keys.sets.add(redisCache.makeIndex(tableName, field.getKey(), value));
+            }
+        }
+
+        for (Map.Entry<String, ToDoubleFunction<T>> field : rangeFields.entrySet()) {
+            double score = field.getValue().applyAsDouble(model);
+            if (Double.isNaN(score)) {
+                continue;
+            }
+
+            keys.ranges.add(redisCache.makeRangeIndex(tableName, field.getKey()));
+            // as a string, so Lua doesn't round it
+            keys.scores.add(score == Double.POSITIVE_INFINITY ? "+inf"
+                    : score == Double.NEGATIVE_INFINITY ? "-inf" : Double.toString(score));
+        }
+
+        return GSON.toJson(keys);
+    }
+
+    void reindex(Collection<T> models) {
+        Map<String, String> indexes = new LinkedHashMap<>();
+        for (T model : models) {
+            indexes.put(model.getId(), index(model));
+        }
+
+        redisCache.reindex(tableName, indexes, indexExpireAfter);
+    }
+
+    void unindex(Collection<String> ids) {
+        Map<String, String> indexes = new LinkedHashMap<>();
+        for (String id : ids) {
+            indexes.put(id, "");
+        }
+
+        redisCache.reindex(tableName, indexes, indexExpireAfter);
+    }
+
+    long count(String field, String value) {
+        return redisCache.countIndexed(tableName, field, value);
+    }
+
+    Set<String> ids(String field, String value) {
+        return redisCache.getIndexed(tableName, field, value);
+    }
+
+    Iterator<List<String>> indexedIds(int count) {
+        return redisCache.iterateIndexed(tableName, count);
+    }
+
+    List<String> rangeIds(String field, double min, double max) {
+        return redisCache.getIndexedRange(tableName, field, min, max);
+    }
+
+    boolean matches(T model, String field, String value) {
+        return value.equals(valueFields.get(field).apply(model));
+    }
+
+    boolean inRange(T model, String field, double min, double max) {
+        double score = rangeFields.get(field).applyAsDouble(model);
+        return score >= min && score <= max;
+    }
+
+    /**
+     * Index keys of a model, serialized to the JSON read by the reindex script.
+     */
+    private static final class IndexKeys {
+
+        private final List<String> sets = new ArrayList<>();
+        private final List<String> ranges = new ArrayList<>();
+        private final List<String> scores = new ArrayList<>();
+    }
+}
@@ -0,0 +1,86 @@
+package dev.alexissdev.storage.redis;
+
+import dev.alexissdev.storage.redis.connection.RedisCache;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * How the serialized models of a {@link RedisModelService} are laid out in Redis.
+ *
+ * <p>The models of a table are either the fields of a single hash, which expires as a whole,
+ * the fields of a fixed number of small bucket hashes, or keys of their own, which expire
+ * independently.
+ */
+public interface RedisLayout {
+
+    @Nullable byte[] get(String id);
+
+    void set(String id, byte[] value);
+
+    /**
+     * Stores a model and moves it to the given index keys, atomically. The index keys only expire
+     * when every model has its own key and reads don't refresh its expiration.
+     *
+     * @param index the JSON of the index keys, see {@link RedisCache#reindex(String, Map, long)}
+     */
+    void setIndexed(String id, byte[] value, String index);
+
+    /**
+     * Removes from the indexes the ids of the models that don't exist anymore.
+     *
+     * @return the number of ids removed
+     */
+    long pruneIndex(Collection<String> ids);
+
+    /**
+     * Atomically replaces the value of a model only if it still holds the expected bytes.
+     *
+     * @return whether the value was replaced
+     */
+    boolean compareAndSet(String id, byte[] expected, byte[] value);
+
+    void delete(String id);
+
+    /**
+     * Atomically deletes a model only if it still holds the expected bytes.
+     *
+     * @return whether the model was deleted
+     */
+    boolean compareAndDelete(String id, byte[] expected);
+
+    /**
+     * Retrieves several models in a single round trip.
+     *
+     * @return the values in the order of the ids, with null for the missing models
+     */
+    List<byte[]> getMany(List<String> ids);
+
+    /**
+     * Stores several models, by their ids, in a single round trip.
+     */
+    void setMany(Map<String, byte[]> values);
+
+    /**
+     * Deletes several models in a single round trip.
+     */
+    void deleteMany(Collection<String> ids);
+
+    boolean exists(String id);
+
+    long count();
+
+    /**
+     * Lazily iterates the values of the table, a chunk per round trip.
+     */
+    Iterator<byte[]> iterate();
+
+    /**
+     * Lazily iterates the chunks of values of the table, each fetched by a single round trip
+     * when requested.
+     */
+    Iterator<List<byte[]>> chunks();
+}
@@ -1,83 +1,412 @@
 package dev.alexissdev.storage.redis;
 
-import com.google.gson.Gson;
 import dev.alexissdev.storage.ModelService;
 import dev.alexissdev.storage.dist.RemoteModelService;
 import dev.alexissdev.storage.model.Model;
-import dev.alexissdev.storage.redis.connection.RedisCache;
+import dev.alexissdev.storage.redis.codec.RedisSerializer;
+import dev.alexissdev.storage.redis.metrics.CompressionMetrics;
+import dev.alexissdev.storage.stream.ModelCursor;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
+/**
+ * Service storing the models of type {@code T} in Redis, keyed by their id, either as the values
+ * of a single hash or as keys of their own, see {@link RedisLayout}.
+ *
+ * <p>Models are converted to bytes with a {@link RedisSerializer}: JSON with Gson by default, or
+ * the compact binary records of {@link dev.alexissdev.storage.redis.codec.BinaryWriter} when the
+ * builder is given a {@link dev.alexissdev.storage.redis.codec.RedisModelParser}.
+ *
+ * @param <T>
+ *        The type of the model managed by this service.
+ */
 public class RedisModelService<T extends Model>
         extends RemoteModelService<T> {
 
-    private final Gson gson;
-    private final Class<T> type;
-    private final RedisCache redisCache;
-    private final String tableName;
-    private final int expireAfterSave;
 
-    protected RedisModelService(Executor executor, Class<T> type, Gson gson, RedisCache redisCache,
-            String tableName, int expireAfterSave
+    private final RedisSerializer<T> serializer;
+    private final RedisLayout layout;
+    private final ForkJoinPool parsePool;
+    private final int batchSize;
+    private final @Nullable RedisIndexes<T> indexes;
+    private final @Nullable CompressionMetrics compressionMetrics;
+
+    protected RedisModelService(Executor executor, long timeoutMillis, long closeTimeoutMillis,
+            boolean ownsExecutor, RedisSerializer<T> serializer, RedisLayout layout,
+            ForkJoinPool parsePool, int batchSize, @Nullable RedisIndexes<T> indexes,
+            @Nullable CompressionMetrics compressionMetrics
     ) {
-        super(executor);
-        this.gson = gson;
-        this.type = type;
-        this.redisCache = redisCache;
-        this.tableName = tableName;
-        this.expireAfterSave = expireAfterSave;
+        super(executor, timeoutMillis, closeTimeoutMillis, ownsExecutor);
+        this.serializer = serializer;
+        this.layout = layout;
+        this.parsePool = parsePool;
+        this.batchSize = batchSize;
+        this.indexes = indexes;
+        this.compressionMetrics = compressionMetrics;
     }
 
     public static <T extends Model> RedisModelServiceBuilder<T> builder(Class<T> type) {
         return new RedisModelServiceBuilder<>(type);
     }
 
+    /**
+     * Returns the metrics of the compressed values, or {@code null} if compression isn't enabled.
+     */
+    public @Nullable CompressionMetrics getCompressionMetrics() {
+        return compressionMetrics;
+    }
+
     @Override
     public void saveSync(@NotNull T model) {
-        redisCache.set(tableName, model.getId(), gson.toJson(model), expireAfterSave);
+        if (indexes == null) {
+            layout.set(model.getId(), serializer.serialize(model));
+        } else {
+            layout.setIndexed(model.getId(), serializer.serialize(model), indexes.index(model));
+        }
+    }
+
+    /**
+     * Saves the models in chunks of the batch size, each written in a single round trip.
+     */
+    @Override
+    public void saveBatchSync(@NotNull Collection<T> models) {
+        List<T> chunk = new ArrayList<>();
+        for (T model : models) {
+            chunk.add(model);
+            if (chunk.size() == batchSize) {
+                saveChunk(chunk);
+                chunk.clear();
+            }
+        }
+
+        saveChunk(chunk);
+    }
+
+    private void saveChunk(List<T> models) {
+        Map<String, byte[]> values = new LinkedHashMap<>();
+        for (T model : models) {
+            values.put(model.getId(), serializer.serialize(model));
+        }
+
+        layout.setMany(values);
+        if (indexes != null) {
+            indexes.reindex(models);
+        }
+    }
+
+    /**
+     * Applies the updater with optimistic concurrency: the new value is written with a
+     * compare-and-set against the value it was computed from, otherwise the model is read
+     * and updated again after a short jittered backoff.
+     *
+     * @throws ConcurrentModificationException if the update keeps conflicting
+     */
+    @Override
+    public @Nullable T updateSync(@NotNull String id, @NotNull UnaryOperator<T> updater) {
+        for (int attempt = 1; ; attempt++) {
+            byte[] value = layout.get(id);
+            if (value == null) {
+                return null;
+            }
+
+            T updated = updater.apply(serializer.deserialize(value));
+            if (layout.compareAndSet(id, value, serializer.serialize(updated))) {
+                if (indexes != null) {
+                    indexes.reindex(Collections.singletonList(updated));
+                }
+
+                return updated;
+            }
+
+            awaitConflictRetry(attempt, "update", id);
+        }
+    }
+
+    /**
+     * Deletes the model with a conditional delete against the value it was read as, so the
+     * returned model is exactly the deleted one even if it's updated concurrently.
+     *
+     * @throws ConcurrentModificationException if the delete keeps conflicting
+     */
+    @Override
+    public @Nullable T deleteSync(@NotNull String id) {
+        for (int attempt = 1; ; attempt++) {
+            byte[] value = layout.get(id);
+            if (value == null) {
+                return null;
+            }
+
+            if (layout.compareAndDelete(id, value)) {
+                if (indexes != null) {
+                    indexes.unindex(Collections.singletonList(id));
+                }
+
+                return serializer.deserialize(value);
+            }
+
+            awaitConflictRetry(attempt, "delete", id);
+        }
     }
 
     @Override
     public void deleteSync(@NotNull T model) {
-        redisCache.del(tableName, model.getId());
+        layout.delete(model.getId());
+        if (indexes != null) {
+            indexes.unindex(Collections.singletonList(model.getId()));
+        }
+    }
+
+    /**
+     * Deletes the models in chunks of the batch size, each deleted in a single round trip.
+     *
+     * @param models
+     * 	The models to be deleted.
+     */
+    public void deleteBatchSync(@NotNull Collection<T> models) {
+        List<String> chunk = new ArrayList<>();
+        for (T model : models) {
+            chunk.add(model.getId());
+            if (chunk.size() == batchSize) {
+                deleteChunk(chunk);
+                chunk.clear();
+            }
+        }
+
+        deleteChunk(chunk);
+    }
+
+    private void deleteChunk(List<String> ids) {
+        layout.deleteMany(ids);
+        if (indexes != null) {
+            indexes.unindex(ids);
+        }
     }
 
     @Override
     public @Nullable T findSync(@NotNull String id) {
-        String json = redisCache.get(tableName, id);
-        if (json == null) {
+        byte[] value = layout.get(id);
+        if (value == null) {
             return null;
         }
 
-        return gson.fromJson(json, type);
+        return serializer.deserialize(value);
     }
 
+    /**
+     * Finds the models with the given ids in chunks of the batch size, each read in a single
+     * round trip, skipping the missing ones.
+     *
+     * @param ids
+     * 	The ids of the models to find.
+     * @return the found models, in the order of their ids
+     */
+    public List<T> findBatchSync(@NotNull Collection<String> ids) {
+        List<T> models = new ArrayList<>(ids.size());
+        List<String> chunk = new ArrayList<>(Math.min(ids.size(), batchSize));
+        for (String id : ids) {
+            chunk.add(id);
+            if (chunk.size() == batchSize) {
+                findChunk(chunk, models, null);
+                chunk.clear();
+            }
+        }
+
+        findChunk(chunk, models, null);
+        return models;
+    }
+
+    private void findChunk(List<String> ids, List<T> models, @Nullable List<String> missing) {
+        List<byte[]> values = layout.getMany(ids);
+        for (int i = 0; i < values.size(); i++) {
+            byte[] value = values.get(i);
+            if (value != null) {
+                models.add(serializer.deserialize(value));
+            } else if (missing != null) {
+                missing.add(ids.get(i));
+            }
+        }
+    }
+
+    /**
+     * Finds the models by the id or by a field declared as indexed in the builder. The ids indexed
+     * with the value are read from Redis and only their models are loaded, in batch size chunks.
+     *
+     * @throws IllegalArgumentException if the field isn't the id nor indexed
+     */
     @Override
     public List<T> findSync(@NotNull String field, @NotNull String value) {
-        if (!field.equals(ModelService.ID_FIELD)) {
-            throw new IllegalArgumentException("Only ID field is supported for sync find");
+        if (field.equals(ModelService.ID_FIELD)) {
+            return Collections.singletonList(findSync(value));
         }
 
-        return Collections.singletonList(findSync(value));
+        if (indexes == null || !indexes.isIndexed(field)) {
+            throw new IllegalArgumentException("Field " + field + " isn't indexed");
+        }
+
+        List<T> models = findIndexed(indexes.ids(field, value));
+        models.removeIf(model -> !indexes.matches(model, field, value));
+        return models;
     }
 
+    /**
+     * Finds the models whose numeric field, declared as range indexed in the builder, is within
+     * the given range, answered by the sorted set of the field.
+     *
+     * @param field
+     * 	The range indexed field.
+     * @param min
+     * 	The inclusive minimum of the field.
+     * @param max
+     * 	The inclusive maximum of the field.
+     * @return the models in the range, by ascending field
+     * @throws IllegalArgumentException if the field isn't range indexed
+     */
+    public List<T> findRangeSync(@NotNull String field, double min, double max) {
+        if (indexes == null || !indexes.isRangeIndexed(field)) {
+            throw new IllegalArgumentException("Field " + field + " isn't range indexed");
+        }
+
+        List<T> models = findIndexed(indexes.rangeIds(field, min, max));
+        models.removeIf(model -> !indexes.inRange(model, field, min, max));
+        return models;
+    }
+
+    // loads the models of the indexed ids, pruning the ids of the models that don't exist anymore
+    private List<T> findIndexed(Collection<String> ids) {
+        List<T> models = new ArrayList<>(ids.size());
+        List<String> missing = new ArrayList<>();
+        List<String> chunk = new ArrayList<>(Math.min(ids.size(), batchSize));
+        for (String id : ids) {
+            chunk.add(id);
+            if (chunk.size() == batchSize) {
+                findChunk(chunk, models, missing);
+                chunk.clear();
+            }
+        }
+
+        findChunk(chunk, models, missing);
+        if (!missing.isEmpty()) {
+            layout.pruneIndex(missing);
+        }
+
+        return models;
+    }
+
+    @Override
+    public boolean existsSync(@NotNull String id) {
+        return layout.exists(id);
+    }
+
+    @Override
+    public long countSync() {
+        return layout.count();
+    }
+
+    @Override
+    public long countSync(@NotNull String field, @NotNull String value) {
+        if (field.equals(ModelService.ID_FIELD)) {
+            return existsSync(value) ? 1 : 0;
+        }
+
+        if (indexes == null || !indexes.isIndexed(field)) {
+            throw new IllegalArgumentException("Field " + field + " isn't indexed");
+        }
+
+        if (!indexes.isExpiring()) {
+            return indexes.count(field, value);
+        }
+
+        // the ids of expired models are pruned, only the ids are transferred
+        List<String> ids = new ArrayList<>(indexes.ids(field, value));
+        long count = ids.size();
+        for (int i = 0; i < ids.size(); i += batchSize) {
+            count -= layout.pruneIndex(ids.subList(i, Math.min(ids.size(), i + batchSize)));
+        }
+
+        return count;
+    }
+
+    /**
+     * Removes from the indexes the ids of the models that don't exist anymore, scanning the whole
+     * index a chunk at a time. Queries already prune the ids they find missing, but the ids of models
+     * that expired on their own and are never queried again stay until the index is purged, so tables
+     * whose models expire independently, or with a sliding expiration, should be purged periodically.
+     *
+     * @return the number of ids removed
+     */
+    public long purgeIndexSync() {
+        if (indexes == null) {
+            return 0;
+        }
+
+        long pruned = 0;
+        Iterator<List<String>> chunks = indexes.indexedIds(batchSize);
+        while (chunks.hasNext()) {
+            pruned += layout.pruneIndex(chunks.next());
+        }
+
+        return pruned;
+    }
+
+    public CompletableFuture<Long> purgeIndex() {
+        return supplyAsync(this::purgeIndexSync);
+    }
+
+    /**
+     * Scans the table a chunk at a time instead of fetching it with a single {@code HVALS},
+     * which would block the server for the whole table. Every chunk is deserialized on the
+     * parse pool while the next one is fetched, and the post load action runs on the caller.
+     */
     @Override
     public List<T> findAllSync(@NotNull Consumer<T> postLoadAction) {
-        List<String> values = redisCache.getAllValues(tableName);
+        List<ForkJoinTask<List<T>>> tasks = new ArrayList<>();
+        Iterator<List<byte[]>> chunks = layout.chunks();
+        while (chunks.hasNext()) {
+            List<byte[]> chunk = chunks.next();
+            tasks.add(parsePool.submit(() -> deserialize(chunk)));
+        }
+
         List<T> models = new ArrayList<>();
-        for (String value : values) {
-            T model = gson.fromJson(value, type);
+        for (ForkJoinTask<List<T>> task : tasks) {
+            for (T model : task.join()) {
+                postLoadAction.accept(model);
+                models.add(model);
+            }
+        }
 
-            postLoadAction.accept(model);
-            models.add(model);
+        return models;
+    }
+
+    private List<T> deserialize(List<byte[]> chunk) {
+        List<T> models = new ArrayList<>(chunk.size());
+        for (byte[] value : chunk) {
+            models.add(serializer.deserialize(value));
         }
 
         return models;
     }
+
+    @Override
+    protected ModelCursor<T> openCursor() {
+        return ModelCursor.of(
+                layout.iterate(),
+                serializer::deserialize,
+                () -> { }
+        );
+    }
 }
\ No newline at end of file
@@ -5,15 +5,36 @@ import dev.alexissdev.storage.ModelService;
 import dev.alexissdev.storage.builder.LayoutModelServiceBuilder;
 import dev.alexissdev.storage.dist.DelegatedCachedModelService;
 import dev.alexissdev.storage.model.Model;
+import dev.alexissdev.storage.redis.codec.BinaryCodec;
+import dev.alexissdev.storage.redis.codec.RedisModelParser;
+import dev.alexissdev.storage.redis.codec.RedisSerializer;
 import dev.alexissdev.storage.redis.connection.RedisCache;
+import dev.alexissdev.storage.redis.metrics.CompressionMetrics;
+import dev.alexissdev.storage.resolve.FieldExtractor;
 import dev.alexissdev.storage.util.Validate;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ToDoubleFunction;
+
 public class RedisModelServiceBuilder<T extends Model>
         extends LayoutModelServiceBuilder<T, RedisModelServiceBuilder<T>> {
 
     private Gson gson;
+    private RedisModelParser<T> modelParser;
     private String tableName;
     private int expireAfterSave;
+    private int scanCount = 100;
+    private boolean keyPerModel;
+    private int buckets;
+    private boolean slidingExpiration;
+    private ForkJoinPool parsePool = ForkJoinPool.commonPool();
+    private int batchSize = 100;
+    private int compressionThreshold;
+    private CompressionMetrics compressionMetrics;
+    private final Map<String, FieldExtractor<T>> indexedFields = new LinkedHashMap<>();
+    private final Map<String, ToDoubleFunction<T>> rangeIndexedFields = new LinkedHashMap<>();
     private RedisCache redisCache;
 
     protected RedisModelServiceBuilder(Class<T> type) {
@@ -25,6 +46,43 @@ public class RedisModelServiceBuilder<T extends Model>
         return back();
     }
 
+    /**
+     * Stores the models as compact binary records instead of JSON. The model type must implement
+     * {@link BinaryCodec}, and the parser reads the records it writes. Tables written with Gson
+     * must be migrated, as their values can't be read as records.
+     *
+     * @param modelParser the parser of the stored records
+     * @return the current builder instance
+     */
+    public RedisModelServiceBuilder<T> modelParser(RedisModelParser<T> modelParser) {
+        this.modelParser = modelParser;
+        return back();
+    }
+
+    /**
+     * Compresses the values of at least the given size with DEFLATE, behind a header byte, so
+     * compressed and uncompressed values can coexist in a table while it's enabled. Only values
+     * that shrink are stored compressed.
+     *
+     * @param compressionThreshold the minimum size in bytes of the compressed values, zero or less to disable it
+     * @return the current builder instance
+     */
+    public RedisModelServiceBuilder<T> compression(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+        return back();
+    }
+
+    /**
+     * Sets the metrics recording the compression ratio and the time spent compressing values.
+     *
+     * @param compressionMetrics the metrics, a new instance by default when compression is enabled
+     * @return the current builder instance
+     */
+    public RedisModelServiceBuilder<T> compressionMetrics(CompressionMetrics compressionMetrics) {
+        this.compressionMetrics = compressionMetrics;
+        return back();
+    }
+
     public RedisModelServiceBuilder<T> tableName(String tableName) {
         this.tableName = tableName;
         return back();
@@ -35,6 +93,113 @@ public class RedisModelServiceBuilder<T extends Model>
         return back();
     }
 
+    /**
+     * Sets the {@code COUNT} hint used when the table is scanned with {@code HSCAN}, or {@code SCAN}
+     * when every model is stored in its own key.
+     *
+     * @param scanCount how many entries Redis should return per round trip, must be positive
+     * @return the current builder instance
+     */
+    public RedisModelServiceBuilder<T> scanCount(int scanCount) {
+        this.scanCount = scanCount;
+        return back();
+    }
+
+    /**
+     * Stores every model in a key of its own instead of a field of the table hash, so
+     * {@link #expireAfterSave(int)} applies to each model rather than to the whole table.
+     * Listing and counting the table then scan the whole keyspace.
+     *
+     * @param keyPerModel whether every model is stored in its own key
+     * @return the current builder instance
+     */
+    public RedisModelServiceBuilder<T> keyPerModel(boolean keyPerModel) {
+        this.keyPerModel = keyPerModel;
+        return back();
+    }
+
+    /**
+     * Spreads the models over a fixed number of small hashes instead of a single table hash, by
+     * the CRC-32 of their id. Buckets holding fewer models than the {@code hash-max-listpack-entries}
+     * of the server, 128 by default, keep the compact listpack encoding and take far less memory.
+     * The buckets live on the same server as the rest of the table. Changing the number of buckets
+     * of an existing table requires migrating it, as the models would be looked up in other buckets.
+     *
+     * @param buckets the number of buckets, zero or less to store the table in a single hash
+     * @return the current builder instance
+     */
+    public RedisModelServiceBuilder<T> buckets(int buckets) {
+        this.buckets = buckets;
+        return back();
+    }
+
+    /**
+     * Refreshes the expiration every time a model is found by its id, so only idle models expire.
+     * It refreshes the model alone with {@link #keyPerModel(boolean)}, the bucket of the model with
+     * {@link #buckets(int)}, or the whole table otherwise, and requires a positive {@link #expireAfterSave(int)}.
+     *
+     * @param slidingExpiration whether reads refresh the expiration of the model
+     * @return the current builder instance
+     */
+    public RedisModelServiceBuilder<T> slidingExpiration(boolean slidingExpiration) {
+        this.slidingExpiration = slidingExpiration;
+        return back();
+    }
+
+    /**
+     * Sets the pool deserializing the chunks scanned by {@code findAll} while the next
+     * chunk is fetched.
+     *
+     * @param parsePool the parse pool, the common pool by default
+     * @return the current builder instance
+     */
+    public RedisModelServiceBuilder<T> parsePool(ForkJoinPool parsePool) {
+        this.parsePool = parsePool;
+        return back();
+    }
+
+    /**
+     * Sets how many models are sent per round trip by the batch operations.
+     *
+     * @param batchSize the models per pipelined chunk, must be positive
+     * @return the current builder instance
+     */
+    public RedisModelServiceBuilder<T> batchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return back();
+    }
+
+    /**
+     * Declares a field queried by value. Redis keeps a set with the ids of the models of every
+     * value of the field, updated when they're saved and deleted, so {@code find} by the field
+     * only loads the matching models.
+     *
+     * @param field     the name of the field, as queried, without any ':'
+     * @param extractor the value of the field of a model, null to not index it
+     * @return the current builder instance
+     */
+    public RedisModelServiceBuilder<T> index(String field, FieldExtractor<T> extractor) {
+        Validate.notNull(field, "field");
+        Validate.notNull(extractor, "extractor");
+        indexedFields.put(field, extractor);
+        return back();
+    }
+
+    /**
+     * Declares a numeric field queried by range. Redis keeps a sorted set of the ids of the
+     * models scored by the field, queried with {@link RedisModelService#findRangeSync(String, double, double)}.
+     *
+     * @param field     the name of the field, without any ':'
+     * @param extractor the value of the field of a model, NaN to not index it
+     * @return the current builder instance
+     */
+    public RedisModelServiceBuilder<T> rangeIndex(String field, ToDoubleFunction<T> extractor) {
+        Validate.notNull(field, "field");
+        Validate.notNull(extractor, "extractor");
+        rangeIndexedFields.put(field, extractor);
+        return back();
+    }
+
     public RedisModelServiceBuilder<T> redisCache(RedisCache redisCache) {
         this.redisCache = redisCache;
         return back();
@@ -48,18 +213,68 @@ public class RedisModelServiceBuilder<T extends Model>
     @Override
     public ModelService<T> build() {
         check();
-        Validate.notNull(gson, "gson");
+        RedisSerializer<T> serializer;
+        if (modelParser != null) {
+            Validate.state(BinaryCodec.class.isAssignableFrom(type),
+                    "%s doesn't implement BinaryCodec", type.getName());
+            serializer = RedisSerializer.codec(modelParser);
+        } else {
+            Validate.notNull(gson, "gson");
+            serializer = RedisSerializer.gson(gson, type);
+        }
+        CompressionMetrics compressionMetrics = null;
+        if (compressionThreshold > 0) {
+            compressionMetrics = this.compressionMetrics == null ? new CompressionMetrics() : this.compressionMetrics;
+            serializer = RedisSerializer.compressed(serializer, compressionThreshold, compressionMetrics);
+        }
         Validate.notNull(tableName, "tableName");
         Validate.notNull(redisCache, "redisCache");
+        Validate.state(scanCount > 0, "scanCount must be positive");
+        Validate.notNull(parsePool, "parsePool");
+        Validate.state(batchSize > 0, "batchSize must be positive");
         if (expireAfterSave <= 0) {
             expireAfterSave = -1;
         }
+        Validate.state(!slidingExpiration || expireAfterSave > 0, "slidingExpiration requires expireAfterSave");
+
+        for (String field : indexedFields.keySet()) {
+            Validate.state(!field.isEmpty() && field.indexOf(':') == -1 && !field.equals(ModelService.ID_FIELD),
+                    "Invalid indexed field %s", field);
+        }
+        for (String field : rangeIndexedFields.keySet()) {
+            Validate.state(!field.isEmpty() && field.indexOf(':') == -1 && !indexedFields.containsKey(field),
+                    "Invalid range indexed field %s", field);
+        }
+
+        RedisIndexes<T> indexes = indexedFields.isEmpty() && rangeIndexedFields.isEmpty()
+                ? null
+                : new RedisIndexes<>(redisCache, tableName,
+                        keyPerModel && !slidingExpiration ? expireAfterSave : -1, expireAfterSave > 0,
+                        new LinkedHashMap<>(indexedFields), new LinkedHashMap<>(rangeIndexedFields));
+        Validate.state(buckets <= 0 || !keyPerModel, "buckets can't be used with keyPerModel");
+
+        RedisLayout layout;
+        if (keyPerModel) {
+            layout = new KeyLayout(redisCache, tableName, expireAfterSave, slidingExpiration, scanCount);
+        } else if (buckets > 0) {
+            layout = new BucketLayout(redisCache, tableName, buckets, expireAfterSave, slidingExpiration, scanCount);
+        } else {
+            layout = new HashLayout(redisCache, tableName, expireAfterSave, slidingExpiration, scanCount);
+        }
 
-        ModelService<T> modelService = new RedisModelService<>(executor, type, gson, redisCache, tableName, expireAfterSave);
+        ModelService<T> modelService = new RedisModelService<>(
+                executor, timeoutMillis, closeTimeoutMillis,
+                ownsExecutor && cacheModelService == null,
+                serializer, layout, parsePool, batchSize, indexes,
+                compressionMetrics
+        );
         if (cacheModelService == null) {
             return modelService;
         }
 
-        return new DelegatedCachedModelService<>(executor, cacheModelService, resolverRegistry, modelService);
+        return new DelegatedCachedModelService<>(
+                executor, timeoutMillis, closeTimeoutMillis, ownsExecutor,
+                cacheModelService, resolverRegistry, modelService
+        );
     }
 }
\ No newline at end of file
@@ -0,0 +1,12 @@
+package dev.alexissdev.storage.redis.codec;
+
+import dev.alexissdev.storage.codec.ModelCodec;
+
+/**
+ * Represents a codec serializing a model to the compact binary records written by a
+ * {@link BinaryWriter}, usually as {@code BinaryWriter.create().write(...).end()}.
+ */
+
+public interface BinaryCodec
+        extends ModelCodec<byte[]> {
+}
@@ -0,0 +1,29 @@
+package dev.alexissdev.storage.redis.codec;
+
+/**
+ * Layout of the binary records shared by {@link BinaryWriter} and {@link BinaryReader}.
+ *
+ * <p>A record starts with the {@link #VERSION} byte, followed by its fields until the end of the
+ * record. A field is its name, as a varint length and the UTF-8 bytes, a tag byte and the value
+ * of that tag: integers are zigzag varints, doubles 8 big endian bytes, strings and nested records
+ * are prefixed by their varint length, and lists by their varint size followed by tagged values.
+ */
+final class BinaryFormat {
+
+    static final byte VERSION = 1;
+
+    static final byte NULL = 0;
+    static final byte STRING = 1;
+    static final byte INT = 2;
+    static final byte LONG = 3;
+    static final byte DOUBLE = 4;
+    static final byte TRUE = 5;
+    static final byte FALSE = 6;
+    static final byte UUID = 7;
+    static final byte RECORD = 8;
+    static final byte LIST = 9;
+
+    private BinaryFormat() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,305 @@
+package dev.alexissdev.storage.redis.codec;
+
+import dev.alexissdev.storage.codec.ModelCodec;
+import dev.alexissdev.storage.codec.ModelReader;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * A {@link ModelReader} over the binary records written by a {@link BinaryWriter}.
+ *
+ * <p>The fields are decoded in a single pass when the reader is created, except the nested
+ * records, which are only decoded when a child is read. Numeric fields are read regardless
+ * of the type they were written with, and UUIDs either as UUIDs or as strings.
+ */
+
+public class BinaryReader
+        implements ModelReader<byte[]> {
+
+    private final Map<String, Object> fields;
+
+    private BinaryReader(Map<String, Object> fields) {
+        this.fields = fields;
+    }
+
+    /**
+     * Creates a reader of the given record.
+     *
+     * @throws IllegalArgumentException if the bytes aren't a record of a known version.
+     */
+    public static BinaryReader create(byte[] record) {
+        if (record.length == 0 || record[0] != BinaryFormat.VERSION) {
+            throw new IllegalArgumentException("Not a binary record of version " + BinaryFormat.VERSION);
+        }
+
+        Decoder decoder = new Decoder(record);
+        Map<String, Object> fields = new HashMap<>();
+        while (decoder.hasRemaining()) {
+            String field = decoder.readString();
+            fields.put(field, decoder.readValue());
+        }
+
+        return new BinaryReader(fields);
+    }
+
+    @Override
+    public UUID readUuid(String field) {
+        Object value = fields.get(field);
+        if (value == null || value instanceof UUID) {
+            return (UUID) value;
+        }
+
+        return UUID.fromString((String) value);
+    }
+
+    @Override
+    public Date readDate(String field) {
+        Object value = fields.get(field);
+        return value == null ? null : new Date(((Number) value).longValue());
+    }
+
+    @Override
+    public String readString(String field) {
+        return (String) fields.get(field);
+    }
+
+    @Override
+    public double readDouble(String field) {
+        return number(field).doubleValue();
+    }
+
+    @Override
+    public long readLong(String field) {
+        return number(field).longValue();
+    }
+
+    @Override
+    public int readInt(String field) {
+        return number(field).intValue();
+    }
+
+    @Override
+    public boolean readBoolean(String field) {
+        return (Boolean) required(field);
+    }
+
+    @Override
+    public <T> List<T> readList(String field, Class<T> clazz) {
+        List<?> elements = (List<?>) fields.get(field);
+        if (elements == null) {
+            return null;
+        }
+
+        List<T> list = new ArrayList<>(elements.size());
+        for (Object element : elements) {
+            list.add(clazz.cast(convert(element, clazz)));
+        }
+
+        return list;
+    }
+
+    @Override
+    public <T extends ModelCodec<byte[]>> @Nullable T readChild(
+            String field,
+            Function<ModelReader<byte[]>, T> parser
+    ) {
+        byte[] child = (byte[]) fields.get(field);
+
+        if (child == null) {
+            return null;
+        }
+
+        return parser.apply(BinaryReader.create(child));
+    }
+
+    @Override
+    public <K, V extends ModelCodec<byte[]>> Map<K, V> readMap(
+            String field, Function<V, K> keyParser,
+            Function<ModelReader<byte[]>, V> valueParser
+    ) {
+        List<?> records = records(field);
+        Map<K, V> map = new HashMap<>(records.size());
+
+        for (Object record : records) {
+            V value = valueParser.apply(BinaryReader.create((byte[]) record));
+
+            map.put(keyParser.apply(value), value);
+        }
+
+        return map;
+    }
+
+    @Override
+    public <T extends ModelCodec<byte[]>> Set<T> readChildren(
+            String field,
+            Function<ModelReader<byte[]>, T> parser
+    ) {
+        Set<T> children = new HashSet<>();
+
+        for (Object record : records(field)) {
+            children.add(parser.apply(BinaryReader.create((byte[]) record)));
+        }
+
+        return children;
+    }
+
+    private Object required(String field) {
+        Object value = fields.get(field);
+        if (value == null) {
+            // same as unboxing a missing value from a Document
+            throw new NullPointerException("Missing field " + field);
+        }
+
+        return value;
+    }
+
+    private Number number(String field) {
+        return (Number) required(field);
+    }
+
+    private List<?> records(String field) {
+        return (List<?>) required(field);
+    }
+
+    private static Object convert(Object element, Class<?> clazz) {
+        if (element == null || clazz.isInstance(element)) {
+            return element;
+        }
+
+        if (element instanceof Number) {
+            Number number = (Number) element;
+            if (clazz == Integer.class) {
+                return number.intValue();
+            } else if (clazz == Long.class) {
+                return number.longValue();
+            } else if (clazz == Double.class) {
+                return number.doubleValue();
+            } else if (clazz == Float.class) {
+                return number.floatValue();
+            } else if (clazz == Date.class) {
+                return new Date(number.longValue());
+            }
+        } else if (element instanceof String && clazz == UUID.class) {
+            return UUID.fromString((String) element);
+        } else if (element instanceof UUID && clazz == String.class) {
+            return element.toString();
+        }
+
+        return element;
+    }
+
+    /**
+     * Sequential decoder of the values of a record.
+     */
+    private static final class Decoder {
+
+        private final byte[] bytes;
+        private int position = 1;
+
+        private Decoder(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        private boolean hasRemaining() {
+            return position < bytes.length;
+        }
+
+        private Object readValue() {
+            byte tag = bytes[position++];
+            switch (tag) {
+                case BinaryFormat.NULL:
+                    return null;
+                case BinaryFormat.STRING:
+                    return readString();
+                case BinaryFormat.INT:
+                    return (int) unzigzag(readVarLong());
+                case BinaryFormat.LONG:
+                    return unzigzag(readVarLong());
+                case BinaryFormat.DOUBLE:
+                    return Double.longBitsToDouble(readFixedLong());
+                case BinaryFormat.TRUE:
+                    return Boolean.TRUE;
+                case BinaryFormat.FALSE:
+                    return Boolean.FALSE;
+                case BinaryFormat.UUID:
+                    return new UUID(readFixedLong(), readFixedLong());
+                case BinaryFormat.RECORD:
+                    return readBytes();
+                case BinaryFormat.LIST:
+                    int size = length();
+                    if (size == 0) {
+                        return Collections.emptyList();
+                    }
+
+                    List<Object> list = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        list.add(readValue());
+                    }
+                    return list;
+                default:
+                    throw new IllegalArgumentException("Unknown tag " + tag + " at " + (position - 1));
+            }
+        }
+
+        private String readString() {
+            int length = length();
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        private byte[] readBytes() {
+            int length = length();
+            byte[] value = new byte[length];
+            System.arraycopy(bytes, position, value, 0, length);
+            position += length;
+            return value;
+        }
+
+        private int length() {
+            long length = readVarLong();
+            if (length < 0 || length > bytes.length - position) {
+                throw new IllegalArgumentException("Corrupted record, length " + length + " at " + position);
+            }
+
+            return (int) length;
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+
+            throw new IllegalArgumentException("Malformed varint at " + position);
+        }
+
+        private long readFixedLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (bytes[position++] & 0xFF);
+            }
+
+            return value;
+        }
+
+        private static long unzigzag(long value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package dev.alexissdev.storage.redis.codec;
+
+import dev.alexissdev.storage.codec.DelegateObjectModelWriter;
+import dev.alexissdev.storage.codec.ModelCodec;
+import dev.alexissdev.storage.codec.ModelWriter;
+import dev.alexissdev.storage.model.Model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * A {@link ModelWriter} producing compact binary records, see {@link BinaryFormat}.
+ *
+ * <p>Field names are written once per record and values without any reflection, so a record
+ * is usually several times smaller and cheaper to build than the JSON of the same model.
+ * Children are written as nested records, as returned by their {@link ModelCodec#serialize()}.
+ *
+ * <p>Besides the typed writes, {@link #writeObject(String, Object)} accepts strings, numbers,
+ * booleans, UUIDs, dates, enums, nested records and collections of them.
+ */
+
+public class BinaryWriter
+        extends DelegateObjectModelWriter<byte[]> {
+
+    private byte[] buffer = new byte[64];
+    private int size;
+
+    private BinaryWriter() {
+        buffer[size++] = BinaryFormat.VERSION;
+    }
+
+    public static ModelWriter<byte[]> create() {
+        return new BinaryWriter();
+    }
+
+    public static ModelWriter<byte[]> create(Model model) {
+        return new BinaryWriter()
+                .write("_id", model.getId());
+    }
+
+    @Override
+    public BinaryWriter write(String field, UUID uuid) {
+        writeName(field);
+        writeValue(uuid);
+        return this;
+    }
+
+    @Override
+    public BinaryWriter write(String field, String value) {
+        writeName(field);
+        writeValue(value);
+        return this;
+    }
+
+    @Override
+    public BinaryWriter write(String field, int value) {
+        writeName(field);
+        writeByte(BinaryFormat.INT);
+        writeVarLong(zigzag(value));
+        return this;
+    }
+
+    @Override
+    public BinaryWriter write(String field, long value) {
+        writeName(field);
+        writeByte(BinaryFormat.LONG);
+        writeVarLong(zigzag(value));
+        return this;
+    }
+
+    @Override
+    public BinaryWriter write(String field, double value) {
+        writeName(field);
+        writeByte(BinaryFormat.DOUBLE);
+        writeFixedLong(Double.doubleToLongBits(value));
+        return this;
+    }
+
+    @Override
+    public BinaryWriter write(String field, boolean value) {
+        writeName(field);
+        writeByte(value ? BinaryFormat.TRUE : BinaryFormat.FALSE);
+        return this;
+    }
+
+    @Override
+    public BinaryWriter writeObject(String field, Object value) {
+        writeName(field);
+        writeValue(value);
+        return this;
+    }
+
+    @Override
+    public byte[] end() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    private void writeValue(Object value) {
+        if (value == null) {
+            writeByte(BinaryFormat.NULL);
+        } else if (value instanceof String) {
+            byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+            writeByte(BinaryFormat.STRING);
+            writeVarLong(bytes.length);
+            writeBytes(bytes);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            writeByte(BinaryFormat.INT);
+            writeVarLong(zigzag(((Number) value).intValue()));
+        } else if (value instanceof Long) {
+            writeByte(BinaryFormat.LONG);
+            writeVarLong(zigzag((Long) value));
+        } else if (value instanceof Double || value instanceof Float) {
+            writeByte(BinaryFormat.DOUBLE);
+            writeFixedLong(Double.doubleToLongBits(((Number) value).doubleValue()));
+        } else if (value instanceof Boolean) {
+            writeByte((Boolean) value ? BinaryFormat.TRUE : BinaryFormat.FALSE);
+        } else if (value instanceof UUID) {
+            UUID uuid = (UUID) value;
+            writeByte(BinaryFormat.UUID);
+            writeFixedLong(uuid.getMostSignificantBits());
+            writeFixedLong(uuid.getLeastSignificantBits());
+        } else if (value instanceof Date) {
+            writeByte(BinaryFormat.LONG);
+            writeVarLong(zigzag(((Date) value).getTime()));
+        } else if (value instanceof Enum) {
+            writeValue(((Enum<?>) value).name());
+        } else if (value instanceof byte[]) {
+            byte[] record = (byte[]) value;
+            writeByte(BinaryFormat.RECORD);
+            writeVarLong(record.length);
+            writeBytes(record);
+        } else if (value instanceof Collection) {
+            Collection<?> elements = (Collection<?>) value;
+            writeByte(BinaryFormat.LIST);
+            writeVarLong(elements.size());
+            for (Object element : elements) {
+                writeValue(element);
+            }
+        } else {
+            throw new IllegalArgumentException("Can't write a value of type " + value.getClass().getName());
+        }
+    }
+
+    private void writeName(String field) {
+        byte[] bytes = field.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(bytes.length);
+        writeBytes(bytes);
+    }
+
+    private void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[size++] = (byte) value;
+    }
+
+    private void writeFixedLong(long value) {
+        ensureCapacity(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[size++] = (byte) (value >>> shift);
+        }
+    }
+
+    private void writeByte(byte value) {
+        ensureCapacity(1);
+        buffer[size++] = value;
+    }
+
+    private void writeBytes(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+}
@@ -0,0 +1,16 @@
+package dev.alexissdev.storage.redis.codec;
+
+import dev.alexissdev.storage.codec.ModelParser;
+import dev.alexissdev.storage.model.Model;
+
+/**
+ * Represents a parser for mapping the binary records written by a {@link BinaryWriter} into
+ * models of type {@code T}, reading them through a {@link BinaryReader}.
+ *
+ * @param <T>
+ *        The type of the model that extends {@code Model} and will be parsed from a record.
+ */
+
+public interface RedisModelParser<T extends Model>
+        extends ModelParser<T, byte[]> {
+}
@@ -0,0 +1,86 @@
+package dev.alexissdev.storage.redis.codec;
+
+import com.google.gson.Gson;
+import dev.alexissdev.storage.model.Model;
+import dev.alexissdev.storage.redis.connection.ValueCompression;
+import dev.alexissdev.storage.redis.metrics.CompressionMetrics;
+import dev.alexissdev.storage.util.Validate;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts the models of a {@code RedisModelService} to the bytes stored in Redis and back.
+ *
+ * @param <T>
+ *        The type of the model.
+ */
+public interface RedisSerializer<T extends Model> {
+
+    byte[] serialize(T model);
+
+    T deserialize(byte[] bytes);
+
+    /**
+     * Stores the models as UTF-8 JSON with reflection, the same bytes the service stored
+     * as strings, so existing tables remain readable.
+     */
+    static <T extends Model> RedisSerializer<T> gson(Gson gson, Class<T> type) {
+        Validate.notNull(gson, "gson");
+        Validate.notNull(type, "type");
+
+        return new RedisSerializer<T>() {
+            @Override
+            public byte[] serialize(T model) {
+                return gson.toJson(model).getBytes(StandardCharsets.UTF_8);
+            }
+
+            @Override
+            public T deserialize(byte[] bytes) {
+                return gson.fromJson(new String(bytes, StandardCharsets.UTF_8), type);
+            }
+        };
+    }
+
+    /**
+     * Compresses the values of another serializer with {@link ValueCompression} when they're at
+     * least as large as the threshold, and reads both compressed and uncompressed values.
+     */
+    static <T extends Model> RedisSerializer<T> compressed(RedisSerializer<T> serializer, int threshold,
+            @Nullable CompressionMetrics metrics
+    ) {
+        Validate.notNull(serializer, "serializer");
+
+        return new RedisSerializer<T>() {
+            @Override
+            public byte[] serialize(T model) {
+                return ValueCompression.compress(serializer.serialize(model), threshold, metrics);
+            }
+
+            @Override
+            public T deserialize(byte[] bytes) {
+                return serializer.deserialize(ValueCompression.decompress(bytes, metrics));
+            }
+        };
+    }
+
+    /**
+     * Stores the models as binary records, serialized by the models themselves, which must
+     * implement {@link BinaryCodec}, and parsed with the given parser.
+     */
+    static <T extends Model> RedisSerializer<T> codec(RedisModelParser<T> parser) {
+        Validate.notNull(parser, "parser");
+
+        return new RedisSerializer<T>() {
+            @Override
+            public byte[] serialize(T model) {
+                return ((BinaryCodec) model).serialize();
+            }
+
+            @Override
+            public T deserialize(byte[] bytes) {
+                return parser.parse(BinaryReader.create(bytes));
+            }
+        };
+    }
+}
@@ -3,11 +3,16 @@ package dev.alexissdev.storage.redis.connection;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.Protocol;
 
 /**
  * A builder class for configuring and creating instances of {@link JedisInstance}.
  * Provides a fluent API to set up properties such as host, port, password, timeout,
  * and configuration for a Jedis connection and corresponding Jedis pool.
+ *
+ * <p>The connection and socket timeouts bound how long a stalled Redis server can hold a
+ * caller thread, so they should be kept below the timeout of the services using the pool.
+ * Both are 0 by default, which means no timeout.
  */
 
 public class JedisBuilder {
@@ -16,7 +21,9 @@ public class JedisBuilder {
     private int port;
     private String password;
 
-    private int timeout;
+    // infinite unless set, as before the timeouts were split
+    private int connectionTimeout;
+    private int socketTimeout;
     private JedisPoolConfig config = new JedisPoolConfig();
 
     protected JedisBuilder() {
@@ -38,8 +45,33 @@ public class JedisBuilder {
         return this;
     }
 
+    /**
+     * Sets both the connection and the socket timeout.
+     *
+     * @param timeout the timeout in milliseconds, 0 for no timeout
+     * @return the current builder instance
+     */
+
     public JedisBuilder setTimeout(int timeout) {
-        this.timeout = timeout;
+        this.connectionTimeout = timeout;
+        this.socketTimeout = timeout;
+        return this;
+    }
+
+    public JedisBuilder setConnectionTimeout(int connectionTimeout) {
+        this.connectionTimeout = connectionTimeout;
+        return this;
+    }
+
+    /**
+     * Sets the socket read timeout, the maximum time a single command can wait for its reply.
+     *
+     * @param socketTimeout the timeout in milliseconds, 0 for no timeout
+     * @return the current builder instance
+     */
+
+    public JedisBuilder setSocketTimeout(int socketTimeout) {
+        this.socketTimeout = socketTimeout;
         return this;
     }
 
@@ -49,14 +81,17 @@ public class JedisBuilder {
     }
 
     public JedisInstance build() {
-        Jedis jedis = new Jedis(host, port, timeout);
+        // the listener connection blocks on subscribe, so it can't have a read timeout
+        Jedis jedis = new Jedis(host, port, connectionTimeout, 0);
 
         JedisPool jedisPool;
         if (password == null || password.trim()
                 .isEmpty()) {
-            jedisPool = new JedisPool(config, host, port, timeout);
+            jedisPool = new JedisPool(config, host, port, connectionTimeout, socketTimeout,
+                    null, Protocol.DEFAULT_DATABASE);
         } else {
-            jedisPool = new JedisPool(config, host, port, timeout, password);
+            jedisPool = new JedisPool(config, host, port, connectionTimeout, socketTimeout,
+                    password, Protocol.DEFAULT_DATABASE);
             jedis.auth(password);
         }
 
@@ -0,0 +1,194 @@
+package dev.alexissdev.storage.redis.connection;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.params.GetExParams;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A batch of commands over the tables of a {@link RedisCache}, queued in a pipeline and sent
+ * in a single round trip when the batch is synced or closed. It holds a connection of the pool
+ * until it's closed, so it's meant to be used in a try-with-resources block:
+ *
+ * <pre>{@code
+ * try (RedisBatch batch = redisCache.batch()) {
+ *     batch.set("users", id, value, 60);
+ *     Response<byte[]> other = batch.get("users", otherId);
+ *     batch.sync();
+ *     ...
+ * }
+ * }</pre>
+ *
+ * <p>The responses of the queued reads are only available once the batch has been synced.
+ * A batch isn't thread safe.
+ */
+
+public class RedisBatch
+        implements AutoCloseable {
+
+    private final RedisCache redisCache;
+    private final Jedis jedis;
+    private final Pipeline pipeline;
+    // TTL already queued for every table hash, so it's refreshed once per batch
+    private final Map<String, Long> expirations = new HashMap<>();
+
+    RedisBatch(RedisCache redisCache, Jedis jedis) {
+        this.redisCache = redisCache;
+        this.jedis = jedis;
+        this.pipeline = jedis.pipelined();
+    }
+
+    /**
+     * Queues a {@code HGET} of a key of a table hash.
+     *
+     * @return the response holding the bytes of the value, or null if it doesn't exist, once synced
+     */
+    public Response<byte[]> get(String table, String key) {
+        return pipeline.hget(bytes(redisCache.makeTable(table)), bytes(key));
+    }
+
+    /**
+     * Queues a {@code HSET} of a key of a table hash, followed by an {@code EXPIRE} of the hash
+     * if the seconds are positive and the hash hasn't been given the same TTL in this batch.
+     */
+    public RedisBatch set(String table, String key, byte[] value, long seconds) {
+        String tableName = redisCache.makeTable(table);
+        pipeline.hset(bytes(tableName), bytes(key), value);
+        expire(tableName, seconds);
+        return this;
+    }
+
+    /**
+     * Queues a {@code HDEL} of a key of a table hash.
+     */
+    public RedisBatch del(String table, String key) {
+        pipeline.hdel(bytes(redisCache.makeTable(table)), bytes(key));
+        return this;
+    }
+
+    /**
+     * Queues a {@code HMGET} of several keys of a table hash.
+     *
+     * @return the response holding the bytes of the values in the order of the keys, with null
+     * for the missing keys, once synced
+     */
+    public Response<List<byte[]>> getMany(String table, Collection<String> keys) {
+        return pipeline.hmget(bytes(redisCache.makeTable(table)), bytes(keys));
+    }
+
+    /**
+     * Queues a {@code HSET} of several keys of a table hash, followed by an {@code EXPIRE} of the
+     * hash as {@link #set(String, String, byte[], long)} does.
+     */
+    public RedisBatch setMany(String table, Map<String, byte[]> values, long seconds) {
+        Map<byte[], byte[]> fields = new HashMap<>(values.size() * 2);
+        for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+            fields.put(bytes(entry.getKey()), entry.getValue());
+        }
+
+        String tableName = redisCache.makeTable(table);
+        pipeline.hset(bytes(tableName), fields);
+        expire(tableName, seconds);
+        return this;
+    }
+
+    /**
+     * Queues a {@code HDEL} of several keys of a table hash.
+     */
+    public RedisBatch delMany(String table, Collection<String> keys) {
+        pipeline.hdel(bytes(redisCache.makeTable(table)), bytes(keys));
+        return this;
+    }
+
+    /**
+     * Queues a {@code HLEN} of a table hash.
+     *
+     * @return the response holding the number of keys of the table, once synced
+     */
+    public Response<Long> size(String table) {
+        return pipeline.hlen(bytes(redisCache.makeTable(table)));
+    }
+
+    /**
+     * Queues the read of an entry stored in its own key, refreshing its expiration with
+     * {@code GETEX} if the refresh seconds are positive.
+     *
+     * @return the response holding the bytes of the entry, or null if it doesn't exist, once synced
+     */
+    public Response<byte[]> getEntry(String table, String key, long refreshSeconds) {
+        byte[] entry = bytes(redisCache.makeEntry(table, key));
+        if (refreshSeconds > 0) {
+            return pipeline.getEx(entry, GetExParams.getExParams().ex(refreshSeconds));
+        }
+
+        return pipeline.get(entry);
+    }
+
+    /**
+     * Queues the write of an entry in its own key, with {@code SET EX} if the seconds are positive.
+     */
+    public RedisBatch setEntry(String table, String key, byte[] value, long seconds) {
+        byte[] entry = bytes(redisCache.makeEntry(table, key));
+        if (seconds > 0) {
+            pipeline.setex(entry, seconds, value);
+        } else {
+            pipeline.set(entry, value);
+        }
+
+        return this;
+    }
+
+    /**
+     * Queues the deletion of an entry stored in its own key.
+     */
+    public RedisBatch delEntry(String table, String key) {
+        pipeline.del(bytes(redisCache.makeEntry(table, key)));
+        return this;
+    }
+
+    /**
+     * Sends every queued command and waits for their replies, filling the queued responses.
+     */
+    public void sync() {
+        pipeline.sync();
+        expirations.clear();
+    }
+
+    /**
+     * Sends the commands still queued and returns the connection to the pool.
+     */
+    @Override
+    public void close() {
+        try {
+            pipeline.close();
+        } finally {
+            jedis.close();
+        }
+    }
+
+    private void expire(String tableName, long seconds) {
+        if (seconds > 0 && !Long.valueOf(seconds).equals(expirations.put(tableName, seconds))) {
+            pipeline.expire(bytes(tableName), seconds);
+        }
+    }
+
+    private static byte[][] bytes(Collection<String> values) {
+        byte[][] bytes = new byte[values.size()][];
+        int i = 0;
+        for (String value : values) {
+            bytes[i++] = bytes(value);
+        }
+
+        return bytes;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -1,12 +1,30 @@
 package dev.alexissdev.storage.redis.connection;
 
+import com.google.gson.Gson;
 import org.jetbrains.annotations.Nullable;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.params.GetExParams;
+import redis.clients.jedis.params.ScanParams;
+import redis.clients.jedis.resps.ScanResult;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.zip.CRC32;
 
 /**
  * This class provides a wrapper around Redis operations for caching data.
@@ -16,6 +34,140 @@ import java.util.Set;
 
 public class RedisCache {
 
+    // sets the field, then refreshes the table TTL if positive
+    private static final RedisScript SET_SCRIPT = RedisScript.of(
+            "redis.call('HSET', KEYS[1], ARGV[1], ARGV[2]) " +
+                    "if tonumber(ARGV[3]) > 0 then redis.call('EXPIRE', KEYS[1], ARGV[3]) end " +
+                    "return 1");
+
+    // sets the field only if it still holds the expected value, then refreshes the table TTL
+    private static final RedisScript COMPARE_AND_SET_SCRIPT = RedisScript.of(
+            "if redis.call('HGET', KEYS[1], ARGV[1]) == ARGV[2] then " +
+                    "redis.call('HSET', KEYS[1], ARGV[1], ARGV[3]) " +
+                    "if tonumber(ARGV[4]) > 0 then redis.call('EXPIRE', KEYS[1], ARGV[4]) end " +
+                    "return 1 " +
+                    "end " +
+                    "return 0");
+
+    // deletes the field only if it still holds the expected value
+    private static final RedisScript COMPARE_AND_DEL_SCRIPT = RedisScript.of(
+            "if redis.call('HGET', KEYS[1], ARGV[1]) == ARGV[2] then " +
+                    "return redis.call('HDEL', KEYS[1], ARGV[1]) " +
+                    "end " +
+                    "return 0");
+
+    // gets the field, refreshing the table TTL if the field exists
+    private static final RedisScript GET_AND_TOUCH_SCRIPT = RedisScript.of(
+            "local value = redis.call('HGET', KEYS[1], ARGV[1]) " +
+                    "if value then redis.call('EXPIRE', KEYS[1], ARGV[2]) end " +
+                    "return value");
+
+    // sets the key only if it still holds the expected value, with the given TTL if positive
+    private static final RedisScript COMPARE_AND_SET_ENTRY_SCRIPT = RedisScript.of(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then " +
+                    "if tonumber(ARGV[3]) > 0 then " +
+                    "redis.call('SET', KEYS[1], ARGV[2], 'EX', ARGV[3]) " +
+                    "else " +
+                    "redis.call('SET', KEYS[1], ARGV[2]) " +
+                    "end " +
+                    "return 1 " +
+                    "end " +
+                    "return 0");
+
+    // deletes the key only if it still holds the expected value
+    private static final RedisScript COMPARE_AND_DEL_ENTRY_SCRIPT = RedisScript.of(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then " +
+                    "return redis.call('DEL', KEYS[1]) " +
+                    "end " +
+                    "return 0");
+
+    // moves a model between the index keys of its table: the keys it was added to are read from
+    // the reverse index, the JSON of the new keys, or an empty string to only remove it, all of
+    // them given in KEYS by the caller, and the new keys expire with the given TTL if positive
+    private static final String REINDEX_FUNCTION =
+            "local function unchanged(reverse, id, expected) " +
+                    "return (redis.call('HGET', reverse, id) or '') == expected " +
+                    "end " +
+                    "local function reindex(reverse, id, index, ttl) " +
+                    "local old = redis.call('HGET', reverse, id) " +
+                    "if old then " +
+                    "old = cjson.decode(old) " +
+                    "for _, key in ipairs(old.sets) do redis.call('SREM', key, id) end " +
+                    "for _, key in ipairs(old.ranges) do redis.call('ZREM', key, id) end " +
+                    "end " +
+                    "if index == '' then " +
+                    "redis.call('HDEL', reverse, id) " +
+                    "return " +
+                    "end " +
+                    "local new = cjson.decode(index) " +
+                    "for _, key in ipairs(new.sets) do " +
+                    "redis.call('SADD', key, id) " +
+                    "if ttl > 0 then redis.call('EXPIRE', key, ttl) end " +
+                    "end " +
+                    "for i, key in ipairs(new.ranges) do " +
+                    "redis.call('ZADD', key, new.scores[i], id) " +
+                    "if ttl > 0 then redis.call('EXPIRE', key, ttl) end " +
+                    "end " +
+                    "redis.call('HSET', reverse, id, index) " +
+                    "if ttl > 0 then redis.call('EXPIRE', reverse, ttl) end " +
+                    "end ";
+
+    // reindexes every id, expected and index triple of the arguments, or none of them if the
+    // reverse index of any id changed since it was read
+    private static final RedisScript REINDEX_SCRIPT = RedisScript.of(
+            REINDEX_FUNCTION +
+                    "for i = 2, #ARGV, 3 do " +
+                    "if not unchanged(KEYS[1], ARGV[i], ARGV[i + 1]) then return 0 end " +
+                    "end " +
+                    "for i = 2, #ARGV, 3 do reindex(KEYS[1], ARGV[i], ARGV[i + 2], tonumber(ARGV[1])) end " +
+                    "return 1");
+
+    // sets the field and refreshes the table TTL if positive, then reindexes the model, unless
+    // its reverse index changed since it was read
+    private static final RedisScript SET_INDEXED_SCRIPT = RedisScript.of(
+            REINDEX_FUNCTION +
+                    "if not unchanged(KEYS[2], ARGV[1], ARGV[4]) then return 0 end " +
+                    "redis.call('HSET', KEYS[1], ARGV[1], ARGV[2]) " +
+                    "if tonumber(ARGV[3]) > 0 then redis.call('EXPIRE', KEYS[1], ARGV[3]) end " +
+                    "reindex(KEYS[2], ARGV[1], ARGV[5], tonumber(ARGV[6])) " +
+                    "return 1");
+
+    // sets the key with the given TTL if positive, then reindexes the model, unless its
+    // reverse index changed since it was read
+    private static final RedisScript SET_ENTRY_INDEXED_SCRIPT = RedisScript.of(
+            REINDEX_FUNCTION +
+                    "if not unchanged(KEYS[2], ARGV[1], ARGV[4]) then return 0 end " +
+                    "if tonumber(ARGV[3]) > 0 then " +
+                    "redis.call('SET', KEYS[1], ARGV[2], 'EX', ARGV[3]) " +
+                    "else " +
+                    "redis.call('SET', KEYS[1], ARGV[2]) " +
+                    "end " +
+                    "reindex(KEYS[2], ARGV[1], ARGV[5], tonumber(ARGV[6])) " +
+                    "return 1");
+
+    // unindexes every id of the id, container and expected triples whose model doesn't exist
+    // anymore, checked as a field of the container hash or as the container key itself, unless
+    // its reverse index changed since it was read
+    private static final RedisScript PRUNE_INDEX_SCRIPT = RedisScript.of(
+            REINDEX_FUNCTION +
+                    "local pruned = 0 " +
+                    "for i = 2, #ARGV, 3 do " +
+                    "local exists " +
+                    "if ARGV[1] == 'field' then " +
+                    "exists = redis.call('HEXISTS', ARGV[i + 1], ARGV[i]) " +
+                    "else " +
+                    "exists = redis.call('EXISTS', ARGV[i + 1]) " +
+                    "end " +
+                    "if exists == 0 and unchanged(KEYS[1], ARGV[i], ARGV[i + 2]) then " +
+                    "reindex(KEYS[1], ARGV[i], '', 0) " +
+                    "pruned = pruned + 1 " +
+                    "end " +
+                    "end " +
+                    "return pruned");
+
+    private static final Gson GSON = new Gson();
+
+    private final ScriptRegistry scripts = new ScriptRegistry();
     private final String name;
     private final JedisPool jedisPool;
 
@@ -26,6 +178,8 @@ public class RedisCache {
 
     /**
      * Retrieves all values from a specified Redis hash table.
+     * The values are fetched with a single {@code HVALS}, which blocks the server for the whole
+     * hash, so large tables should be iterated with {@link #iterateValues(String, int)} instead.
      *
      * @param table the name of the table (hash) from which to fetch all values; must not be null
      * @return a list of strings representing all the values in the specified Redis hash table
@@ -37,6 +191,136 @@ public class RedisCache {
         }
     }
 
+    /**
+     * Scans a chunk of a specified Redis hash table with {@code HSCAN}.
+     *
+     * @param table  the name of the table (hash) to scan; must not be null
+     * @param cursor the cursor returned by the previous scan, or {@link ScanParams#SCAN_POINTER_START} to start
+     * @param count  the hint of how many entries Redis should return in this chunk
+     * @return the scanned entries and the cursor for the next chunk
+     */
+
+    public ScanResult<Map.Entry<String, String>> scan(String table, String cursor, int count) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return jedis.hscan(makeTable(table), cursor, new ScanParams().count(count));
+        }
+    }
+
+    /**
+     * Lazily iterates the values of a specified Redis hash table. Chunks of about {@code count}
+     * entries are fetched with {@code HSCAN} only when the previous chunk has been consumed, so
+     * the server is never blocked for the whole hash. As with any {@code HSCAN}, a value may be
+     * returned more than once if the hash is modified during the iteration.
+     *
+     * @param table the name of the table (hash) to iterate; must not be null
+     * @param count the hint of how many entries are fetched per round trip
+     * @return an iterator over the values of the specified Redis hash table
+     */
+
+    public Iterator<String> iterateValues(String table, int count) {
+        return new Iterator<String>() {
+            private final Deque<String> chunk = new ArrayDeque<>();
+            private String cursor = ScanParams.SCAN_POINTER_START;
+            private boolean finished;
+
+            @Override
+            public boolean hasNext() {
+                while (chunk.isEmpty() && !finished) {
+                    ScanResult<Map.Entry<String, String>> result = scan(table, cursor, count);
+                    for (Map.Entry<String, String> entry : result.getResult()) {
+                        chunk.add(entry.getValue());
+                    }
+
+                    cursor = result.getCursor();
+                    finished = result.isCompleteIteration();
+                }
+
+                return !chunk.isEmpty();
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                return chunk.poll();
+            }
+        };
+    }
+
+    /**
+     * Retrieves all values from a specified Redis hash table as raw bytes.
+     * The values are fetched with a single {@code HVALS}, which blocks the server for the whole
+     * hash, so large tables should be iterated with {@link #iterateChunks(String, int)} instead.
+     *
+     * @param table the name of the table (hash) from which to fetch all values; must not be null
+     * @return a list with the bytes of all the values in the specified Redis hash table
+     */
+
+    public List<byte[]> getAllBytes(String table) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return jedis.hvals(bytes(makeTable(table)));
+        }
+    }
+
+    /**
+     * Scans a chunk of a specified Redis hash table with {@code HSCAN}, returning raw bytes.
+     *
+     * @param table  the name of the table (hash) to scan; must not be null
+     * @param cursor the cursor returned by the previous scan, or {@link ScanParams#SCAN_POINTER_START_BINARY} to start
+     * @param count  the hint of how many entries Redis should return in this chunk
+     * @return the scanned entries and the cursor for the next chunk
+     */
+
+    public ScanResult<Map.Entry<byte[], byte[]>> scanBytes(String table, byte[] cursor, int count) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return jedis.hscan(bytes(makeTable(table)), cursor, new ScanParams().count(count));
+        }
+    }
+
+    /**
+     * Lazily iterates the values of a specified Redis hash table as raw bytes, in chunks fetched
+     * with {@code HSCAN} as {@link #iterateValues(String, int)} does.
+     *
+     * @param table the name of the table (hash) to iterate; must not be null
+     * @param count the hint of how many entries are fetched per round trip
+     * @return an iterator over the bytes of the values of the specified Redis hash table
+     */
+
+    public Iterator<byte[]> iterateBytes(String table, int count) {
+        return flatten(iterateChunks(table, count));
+    }
+
+    /**
+     * Lazily iterates the chunks of values of a specified Redis hash table, as raw bytes. Every
+     * chunk is the reply of a single {@code HSCAN}, fetched only when the next chunk is requested,
+     * so a chunk can be processed before the following one is fetched. Empty replies are skipped.
+     *
+     * @param table the name of the table (hash) to iterate; must not be null
+     * @param count the hint of how many entries are fetched per round trip
+     * @return an iterator over the chunks of values of the specified Redis hash table
+     */
+
+    public Iterator<List<byte[]>> iterateChunks(String table, int count) {
+        return new ChunkIterator<byte[]>() {
+            private byte[] cursor = ScanParams.SCAN_POINTER_START_BINARY;
+
+            @Override
+            protected List<byte[]> fetch() {
+                ScanResult<Map.Entry<byte[], byte[]>> result = scanBytes(table, cursor, count);
+                List<byte[]> chunk = new ArrayList<>(result.getResult().size());
+                for (Map.Entry<byte[], byte[]> entry : result.getResult()) {
+                    chunk.add(entry.getValue());
+                }
+
+                cursor = result.getCursorAsBytes();
+                finished = result.isCompleteIteration();
+                return chunk;
+            }
+        };
+    }
+
     /**
      * Retrieves all keys from a specified Redis hash table.
      *
@@ -75,14 +359,31 @@ public class RedisCache {
      */
 
     public void set(String table, String key, String value, long seconds) {
-        try (Jedis jedis = jedisPool.getResource()) {
-            String tableName = makeTable(table);
-            jedis.hset(tableName, key, value);
+        set(table, key, bytes(value), seconds);
+    }
 
-            if (seconds > 0) {
-                jedis.expire(tableName, seconds);
+    /**
+     * Sets a key and its raw bytes value in a specified Redis hash table, and optionally applies an
+     * expiration time to the hash table as {@link #set(String, String, String, long)} does.
+     *
+     * @param table   the name of the Redis hash table where the value will be stored; must not be null
+     * @param key     the key to insert or update in the hash table; must not be null
+     * @param value   the bytes to associate with the specified key; must not be null
+     * @param seconds the expiration time in seconds for the hash table; if greater than 0, the TTL is set
+     */
+
+    public void set(String table, String key, byte[] value, long seconds) {
+        if (seconds <= 0) {
+            try (Jedis jedis = jedisPool.getResource()) {
+                jedis.hset(bytes(makeTable(table)), bytes(key), value);
             }
+            return;
         }
+
+        // the HSET and the EXPIRE run atomically in a single round trip
+        eval(SET_SCRIPT,
+                Collections.singletonList(bytes(makeTable(table))),
+                Arrays.asList(bytes(key), value, bytes(String.valueOf(seconds))));
     }
 
     /**
@@ -99,6 +400,22 @@ public class RedisCache {
         set(table, key, value, -1);
     }
 
+    /**
+     * Atomically replaces the value of a key in a specified Redis hash table, only if it still holds
+     * the expected value. It runs as a single Lua script, so no other client can write in between.
+     *
+     * @param table    the name of the Redis hash table; must not be null
+     * @param key      the key to update; must not be null
+     * @param expected the value the key must currently hold; must not be null
+     * @param value    the new value of the key; must not be null
+     * @param seconds  the expiration time in seconds for the hash table; if greater than 0, the TTL is set
+     * @return {@code true} if the value was replaced, {@code false} if the key held another value or didn't exist
+     */
+
+    public boolean compareAndSet(String table, String key, String expected, String value, long seconds) {
+        return compareAndSet(table, key, bytes(expected), bytes(value), seconds);
+    }
+
     /**
      * Retrieves a value associated with the given key from a specified Redis hash table.
      *
@@ -113,6 +430,88 @@ public class RedisCache {
         }
     }
 
+    /**
+     * Atomically replaces the raw bytes value of a key, only if it still holds the expected bytes,
+     * as {@link #compareAndSet(String, String, String, String, long)} does.
+     *
+     * @param table    the name of the Redis hash table; must not be null
+     * @param key      the key to update; must not be null
+     * @param expected the bytes the key must currently hold; must not be null
+     * @param value    the new bytes of the key; must not be null
+     * @param seconds  the expiration time in seconds for the hash table; if greater than 0, the TTL is set
+     * @return {@code true} if the value was replaced, {@code false} if the key held another value or didn't exist
+     */
+
+    public boolean compareAndSet(String table, String key, byte[] expected, byte[] value, long seconds) {
+        Object result = eval(
+                COMPARE_AND_SET_SCRIPT,
+                Collections.singletonList(bytes(makeTable(table))),
+                Arrays.asList(bytes(key), expected, value, bytes(String.valueOf(seconds)))
+        );
+
+        return Long.valueOf(1).equals(result);
+    }
+
+    /**
+     * Retrieves the raw bytes of the value associated with the given key from a specified Redis hash table.
+     *
+     * @param table the name of the Redis hash table from which the value will be retrieved; must not be null
+     * @param key   the key whose associated value is to be retrieved; must not be null
+     * @return the bytes of the value associated with the specified key, or null if the key does not exist
+     */
+
+    public @Nullable byte[] getBytes(String table, String key) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return jedis.hget(bytes(makeTable(table)), bytes(key));
+        }
+    }
+
+    /**
+     * Retrieves the raw bytes of a value of a specified Redis hash table and, if it exists,
+     * refreshes the expiration time of the hash table, atomically in a single round trip.
+     *
+     * @param table   the name of the Redis hash table; must not be null
+     * @param key     the key whose value is to be retrieved; must not be null
+     * @param seconds the new expiration time in seconds of the hash table, must be positive
+     * @return the bytes of the value, or null if the key does not exist
+     */
+
+    public @Nullable byte[] getAndTouch(String table, String key, long seconds) {
+        return (byte[]) eval(
+                GET_AND_TOUCH_SCRIPT,
+                Collections.singletonList(bytes(makeTable(table))),
+                Arrays.asList(bytes(key), bytes(String.valueOf(seconds)))
+        );
+    }
+
+    /**
+     * Checks whether a key exists in a specified Redis hash table with {@code HEXISTS}, without
+     * transferring its value.
+     *
+     * @param table the name of the Redis hash table; must not be null
+     * @param key   the key to check; must not be null
+     * @return whether the key exists in the hash table
+     */
+
+    public boolean exists(String table, String key) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return jedis.hexists(makeTable(table), key);
+        }
+    }
+
+    /**
+     * Counts the keys of a specified Redis hash table with {@code HLEN}.
+     *
+     * @param table the name of the Redis hash table; must not be null
+     * @return the number of keys in the hash table, zero if it doesn't exist
+     */
+
+    public long size(String table) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return jedis.hlen(makeTable(table));
+        }
+    }
+
     /**
      * Deletes a key-value pair from a specified Redis hash table.
      *
@@ -126,6 +525,698 @@ public class RedisCache {
         }
     }
 
+    /**
+     * Atomically deletes a key of a specified Redis hash table, only if it still holds the expected bytes.
+     *
+     * @param table    the name of the Redis hash table; must not be null
+     * @param key      the key to delete; must not be null
+     * @param expected the bytes the key must currently hold; must not be null
+     * @return {@code true} if the key was deleted, {@code false} if it held another value or didn't exist
+     */
+
+    public boolean compareAndDel(String table, String key, byte[] expected) {
+        Object result = eval(
+                COMPARE_AND_DEL_SCRIPT,
+                Collections.singletonList(bytes(makeTable(table))),
+                Arrays.asList(bytes(key), expected)
+        );
+
+        return Long.valueOf(1).equals(result);
+    }
+
+    /**
+     * Stores a value in its own key of a specified table, instead of a field of the table hash,
+     * so it can expire on its own.
+     *
+     * @param table   the name of the table the key belongs to; must not be null
+     * @param key     the key of the entry within the table; must not be null
+     * @param value   the bytes of the entry; must not be null
+     * @param seconds the expiration time in seconds of the entry; if greater than 0 it's set with {@code SET EX}
+     */
+
+    public void setEntry(String table, String key, byte[] value, long seconds) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            if (seconds > 0) {
+                jedis.setex(bytes(makeEntry(table, key)), seconds, value);
+            } else {
+                jedis.set(bytes(makeEntry(table, key)), value);
+            }
+        }
+    }
+
+    /**
+     * Retrieves the value of an entry stored with {@link #setEntry(String, String, byte[], long)},
+     * optionally refreshing its expiration time in the same round trip with {@code GETEX}.
+     *
+     * @param table          the name of the table the key belongs to; must not be null
+     * @param key            the key of the entry within the table; must not be null
+     * @param refreshSeconds if greater than 0, the new expiration time in seconds of the entry
+     * @return the bytes of the entry, or null if it does not exist or has expired
+     */
+
+    public @Nullable byte[] getEntry(String table, String key, long refreshSeconds) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            byte[] entry = bytes(makeEntry(table, key));
+            if (refreshSeconds > 0) {
+                return jedis.getEx(entry, GetExParams.getExParams().ex(refreshSeconds));
+            }
+
+            return jedis.get(entry);
+        }
+    }
+
+    /**
+     * Atomically replaces the value of an entry, only if it still holds the expected bytes.
+     *
+     * @param table    the name of the table the key belongs to; must not be null
+     * @param key      the key of the entry within the table; must not be null
+     * @param expected the bytes the entry must currently hold; must not be null
+     * @param value    the new bytes of the entry; must not be null
+     * @param seconds  the expiration time in seconds of the entry; if greater than 0 it's set
+     * @return {@code true} if the value was replaced, {@code false} if the entry held another value or didn't exist
+     */
+
+    public boolean compareAndSetEntry(String table, String key, byte[] expected, byte[] value, long seconds) {
+        Object result = eval(
+                COMPARE_AND_SET_ENTRY_SCRIPT,
+                Collections.singletonList(bytes(makeEntry(table, key))),
+                Arrays.asList(expected, value, bytes(String.valueOf(seconds)))
+        );
+
+        return Long.valueOf(1).equals(result);
+    }
+
+    /**
+     * Deletes an entry stored with {@link #setEntry(String, String, byte[], long)}.
+     *
+     * @param table the name of the table the key belongs to; must not be null
+     * @param key   the key of the entry within the table; must not be null
+     */
+
+    public void delEntry(String table, String key) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.del(bytes(makeEntry(table, key)));
+        }
+    }
+
+    /**
+     * Atomically deletes an entry, only if it still holds the expected bytes.
+     *
+     * @param table    the name of the table the key belongs to; must not be null
+     * @param key      the key of the entry within the table; must not be null
+     * @param expected the bytes the entry must currently hold; must not be null
+     * @return {@code true} if the entry was deleted, {@code false} if it held another value or didn't exist
+     */
+
+    public boolean compareAndDelEntry(String table, String key, byte[] expected) {
+        Object result = eval(
+                COMPARE_AND_DEL_ENTRY_SCRIPT,
+                Collections.singletonList(bytes(makeEntry(table, key))),
+                Collections.singletonList(expected)
+        );
+
+        return Long.valueOf(1).equals(result);
+    }
+
+    /**
+     * Checks whether an entry exists and hasn't expired, without transferring its value.
+     *
+     * @param table the name of the table the key belongs to; must not be null
+     * @param key   the key of the entry within the table; must not be null
+     * @return whether the entry exists
+     */
+
+    public boolean existsEntry(String table, String key) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return jedis.exists(bytes(makeEntry(table, key)));
+        }
+    }
+
+    /**
+     * Runs a Lua script on the server. The script is loaded with {@code SCRIPT LOAD} the first time
+     * it runs through this cache, and called with {@code EVALSHA} from then on.
+     *
+     * @param script the script to run; must not be null
+     * @param keys   the keys the script accesses, as {@code KEYS}; must not be null
+     * @param args   the arguments of the script, as {@code ARGV}; must not be null
+     * @return the reply of the script
+     */
+
+    public Object eval(RedisScript script, List<byte[]> keys, List<byte[]> args) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return scripts.eval(jedis, script, keys, args);
+        }
+    }
+
+    /**
+     * Opens a batch queuing commands in a single pipeline, see {@link RedisBatch}. The batch holds
+     * a connection of the pool until it's closed.
+     *
+     * @return a new batch
+     */
+
+    public RedisBatch batch() {
+        return new RedisBatch(this, jedisPool.getResource());
+    }
+
+    /**
+     * Retrieves the values of several keys of a specified Redis hash table with a single {@code HMGET}.
+     *
+     * @param table the name of the Redis hash table; must not be null
+     * @param keys  the keys to retrieve; must not be null
+     * @return the bytes of the values, in the order of the keys, with null for the missing keys
+     */
+
+    public List<byte[]> getMany(String table, List<String> keys) {
+        if (keys.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        try (Jedis jedis = jedisPool.getResource()) {
+            return jedis.hmget(bytes(makeTable(table)), bytes(keys));
+        }
+    }
+
+    /**
+     * Sets several keys of a specified Redis hash table with a single {@code HSET}, followed in the
+     * same round trip by an {@code EXPIRE} of the table if the seconds are positive.
+     *
+     * @param table   the name of the Redis hash table; must not be null
+     * @param values  the bytes of the values by their keys; must not be null
+     * @param seconds the expiration time in seconds for the hash table; if greater than 0, the TTL is set
+     */
+
+    public void setMany(String table, Map<String, byte[]> values, long seconds) {
+        if (values.isEmpty()) {
+            return;
+        }
+
+        Map<byte[], byte[]> fields = new HashMap<>(values.size() * 2);
+        for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+            fields.put(bytes(entry.getKey()), entry.getValue());
+        }
+
+        try (Jedis jedis = jedisPool.getResource(); Pipeline pipeline = jedis.pipelined()) {
+            byte[] tableName = bytes(makeTable(table));
+            pipeline.hset(tableName, fields);
+            if (seconds > 0) {
+                pipeline.expire(tableName, seconds);
+            }
+        }
+    }
+
+    /**
+     * Deletes several keys of a specified Redis hash table with a single {@code HDEL}.
+     *
+     * @param table the name of the Redis hash table; must not be null
+     * @param keys  the keys to delete; must not be null
+     */
+
+    public void delMany(String table, Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.hdel(bytes(makeTable(table)), bytes(keys));
+        }
+    }
+
+    /**
+     * Retrieves several entries stored in their own keys, with a single {@code MGET}, or with
+     * pipelined {@code GETEX} when their expiration is refreshed.
+     *
+     * @param table          the name of the table the keys belong to; must not be null
+     * @param keys           the keys of the entries within the table; must not be null
+     * @param refreshSeconds if greater than 0, the new expiration time in seconds of the entries
+     * @return the bytes of the entries, in the order of the keys, with null for the missing entries
+     */
+
+    public List<byte[]> getEntries(String table, List<String> keys, long refreshSeconds) {
+        if (keys.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        if (refreshSeconds <= 0) {
+            byte[][] entries = new byte[keys.size()][];
+            for (int i = 0; i < entries.length; i++) {
+                entries[i] = bytes(makeEntry(table, keys.get(i)));
+            }
+
+            try (Jedis jedis = jedisPool.getResource()) {
+                return jedis.mget(entries);
+            }
+        }
+
+        List<Response<byte[]>> responses = new ArrayList<>(keys.size());
+        try (RedisBatch batch = batch()) {
+            for (String key : keys) {
+                responses.add(batch.getEntry(table, key, refreshSeconds));
+            }
+            batch.sync();
+        }
+
+        List<byte[]> values = new ArrayList<>(responses.size());
+        for (Response<byte[]> response : responses) {
+            values.add(response.get());
+        }
+
+        return values;
+    }
+
+    /**
+     * Stores several entries in their own keys, in a single pipeline of {@code SET EX}.
+     *
+     * @param table   the name of the table the keys belong to; must not be null
+     * @param values  the bytes of the entries by their keys; must not be null
+     * @param seconds the expiration time in seconds of the entries; if greater than 0 it's set
+     */
+
+    public void setEntries(String table, Map<String, byte[]> values, long seconds) {
+        if (values.isEmpty()) {
+            return;
+        }
+
+        try (RedisBatch batch = batch()) {
+            for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+                batch.setEntry(table, entry.getKey(), entry.getValue(), seconds);
+            }
+        }
+    }
+
+    /**
+     * Deletes several entries stored in their own keys with a single {@code DEL}.
+     *
+     * @param table the name of the table the keys belong to; must not be null
+     * @param keys  the keys of the entries within the table; must not be null
+     */
+
+    public void delEntries(String table, Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        byte[][] entries = new byte[keys.size()][];
+        int i = 0;
+        for (String key : keys) {
+            entries[i++] = bytes(makeEntry(table, key));
+        }
+
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.del(entries);
+        }
+    }
+
+    /**
+     * Counts the entries of a specified table. Entries are keys of their own, so they're
+     * counted with a full {@code SCAN} of the keyspace, transferring the keys but not the values.
+     *
+     * @param table the name of the table to count; must not be null
+     * @param count the hint of how many keys are scanned per round trip
+     * @return the number of entries of the table
+     */
+
+    public long countEntries(String table, int count) {
+        ScanParams params = new ScanParams()
+                .match(bytes(entryPattern(table)))
+                .count(count);
+
+        long entries = 0;
+        byte[] cursor = ScanParams.SCAN_POINTER_START_BINARY;
+        try (Jedis jedis = jedisPool.getResource()) {
+            ScanResult<byte[]> result;
+            do {
+                result = jedis.scan(cursor, params);
+                entries += result.getResult().size();
+                cursor = result.getCursorAsBytes();
+            } while (!result.isCompleteIteration());
+        }
+
+        return entries;
+    }
+
+    /**
+     * Lazily iterates the values of the entries of a specified table, see
+     * {@link #iterateEntryChunks(String, int)}.
+     *
+     * @param table the name of the table to iterate; must not be null
+     * @param count the hint of how many keys are scanned per round trip
+     * @return an iterator over the bytes of the entries of the table
+     */
+
+    public Iterator<byte[]> iterateEntries(String table, int count) {
+        return flatten(iterateEntryChunks(table, count));
+    }
+
+    /**
+     * Lazily iterates the chunks of values of the entries of a specified table. The keys of every
+     * chunk are matched with a {@code SCAN}, which walks the whole keyspace, and their values are
+     * fetched with a single {@code MGET}. Entries expiring in between are skipped.
+     *
+     * @param table the name of the table to iterate; must not be null
+     * @param count the hint of how many keys are scanned per round trip
+     * @return an iterator over the chunks of values of the entries of the table
+     */
+
+    public Iterator<List<byte[]>> iterateEntryChunks(String table, int count) {
+        ScanParams params = new ScanParams()
+                .match(bytes(entryPattern(table)))
+                .count(count);
+
+        return new ChunkIterator<byte[]>() {
+            private byte[] cursor = ScanParams.SCAN_POINTER_START_BINARY;
+
+            @Override
+            protected List<byte[]> fetch() {
+                try (Jedis jedis = jedisPool.getResource()) {
+                    ScanResult<byte[]> result = jedis.scan(cursor, params);
+                    List<byte[]> keys = result.getResult();
+                    List<byte[]> chunk = new ArrayList<>(keys.size());
+                    if (!keys.isEmpty()) {
+                        for (byte[] value : jedis.mget(keys.toArray(new byte[0][]))) {
+                            if (value != null) {
+                                chunk.add(value);
+                            }
+                        }
+                    }
+
+                    cursor = result.getCursorAsBytes();
+                    finished = result.isCompleteIteration();
+                    return chunk;
+                }
+            }
+        };
+    }
+
+    /**
+     * Sets a key of a specified Redis hash table as {@link #set(String, String, byte[], long)} does,
+     * and moves it to the given index keys of the table, atomically.
+     *
+     * @param table        the name of the Redis hash table; must not be null
+     * @param key          the key to insert or update in the hash table; must not be null
+     * @param value        the bytes to associate with the specified key; must not be null
+     * @param seconds      the expiration time in seconds for the hash table; if greater than 0, the TTL is set
+     * @param index        the JSON of the index keys of the value, see {@link #reindex(String, Map, long)}
+     * @param indexSeconds the expiration time in seconds of the index keys; if greater than 0, the TTL is set
+     */
+
+    public void setIndexed(String table, String key, byte[] value, long seconds, String index, long indexSeconds) {
+        setIndexed(SET_INDEXED_SCRIPT, makeTable(table), table, key, value, seconds, index, indexSeconds);
+    }
+
+    /**
+     * Sets a key in a bucket of a specified table as {@link #setIndexed(String, String, byte[], long, String, long)}
+     * does, moving it to the index keys of the table, shared by all its buckets.
+     *
+     * @param table        the name of the table; must not be null
+     * @param bucket       the bucket of the key, see {@link #makeBucket(String, int)}
+     * @param key          the key to insert or update in the bucket; must not be null
+     * @param value        the bytes to associate with the specified key; must not be null
+     * @param seconds      the expiration time in seconds for the bucket; if greater than 0, the TTL is set
+     * @param index        the JSON of the index keys of the value, see {@link #reindex(String, Map, long)}
+     * @param indexSeconds the expiration time in seconds of the index keys; if greater than 0, the TTL is set
+     */
+
+    public void setIndexed(String table, int bucket, String key, byte[] value, long seconds,
+                           String index, long indexSeconds) {
+        setIndexed(SET_INDEXED_SCRIPT, makeTable(makeBucket(table, bucket)), table, key, value, seconds,
+                index, indexSeconds);
+    }
+
+    /**
+     * Stores an entry as {@link #setEntry(String, String, byte[], long)} does, and moves it to the
+     * given index keys of the table, atomically.
+     *
+     * @param table        the name of the table the key belongs to; must not be null
+     * @param key          the key of the entry within the table; must not be null
+     * @param value        the bytes of the entry; must not be null
+     * @param seconds      the expiration time in seconds of the entry; if greater than 0 it's set
+     * @param index        the JSON of the index keys of the entry, see {@link #reindex(String, Map, long)}
+     * @param indexSeconds the expiration time in seconds of the index keys; if greater than 0, the TTL is set
+     */
+
+    public void setEntryIndexed(String table, String key, byte[] value, long seconds, String index, long indexSeconds) {
+        setIndexed(SET_ENTRY_INDEXED_SCRIPT, makeEntry(table, key), table, key, value, seconds, index, indexSeconds);
+    }
+
+    private void setIndexed(RedisScript script, String container, String table, String key, byte[] value,
+                            long seconds, String index, long indexSeconds) {
+        String reverse = makeIndex(table);
+        // retried if the key is reindexed between the read and the script
+        while (true) {
+            String expected = getIndexKeys(table, Collections.singletonList(key)).get(0);
+
+            Set<String> keys = new LinkedHashSet<>();
+            keys.add(container);
+            keys.add(reverse);
+            addIndexKeys(keys, expected);
+            addIndexKeys(keys, index);
+
+            Object reply = eval(script, Arrays.asList(bytes(keys)), Arrays.asList(
+                    bytes(key), value, bytes(String.valueOf(seconds)), bytes(expected),
+                    bytes(index), bytes(String.valueOf(indexSeconds))));
+            if (((Long) reply) == 1) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Moves several keys of a table between the index keys of the table, atomically. The index keys
+     * a key was added to are kept in the reverse index of the table, so the key is removed from them
+     * before it's added to the new ones.
+     *
+     * <p>The index keys are given as a JSON object with the {@code sets} a key belongs to, and the
+     * sorted sets, {@code ranges}, it belongs to with its {@code scores} in each one of them. The
+     * reverse index is read first, so every key the script touches is declared to Redis.
+     *
+     * @param table        the name of the table; must not be null
+     * @param indexes      the JSON of the index keys by key, or an empty string to remove it from the index
+     * @param indexSeconds the expiration time in seconds of the index keys; if greater than 0, the TTL is set
+     */
+
+    public void reindex(String table, Map<String, String> indexes, long indexSeconds) {
+        if (indexes.isEmpty()) {
+            return;
+        }
+
+        List<String> ids = new ArrayList<>(indexes.keySet());
+        // retried if any key is reindexed between the read and the script
+        while (true) {
+            List<String> expected = getIndexKeys(table, ids);
+
+            Set<String> keys = new LinkedHashSet<>();
+            keys.add(makeIndex(table));
+            List<byte[]> args = new ArrayList<>(ids.size() * 3 + 1);
+            args.add(bytes(String.valueOf(indexSeconds)));
+            for (int i = 0; i < ids.size(); i++) {
+                String index = indexes.get(ids.get(i));
+                addIndexKeys(keys, expected.get(i));
+                addIndexKeys(keys, index);
+
+                args.add(bytes(ids.get(i)));
+                args.add(bytes(expected.get(i)));
+                args.add(bytes(index));
+            }
+
+            if (((Long) eval(REINDEX_SCRIPT, Arrays.asList(bytes(keys)), args)) == 1) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes from the index of a table the keys whose value doesn't exist anymore, as after
+     * they expire. The existence of every key is checked atomically with its removal, so a key
+     * saved again in the meantime stays indexed.
+     *
+     * @param table      the name of the table; must not be null
+     * @param containers the Redis key holding the value by key
+     * @param fields     whether the keys are fields of their container hash, or the containers are the values
+     * @return the number of keys removed from the index
+     */
+
+    public long pruneIndex(String table, Map<String, String> containers, boolean fields) {
+        if (containers.isEmpty()) {
+            return 0;
+        }
+
+        List<String> ids = new ArrayList<>(containers.keySet());
+        List<String> expected = getIndexKeys(table, ids);
+
+        Set<String> keys = new LinkedHashSet<>();
+        keys.add(makeIndex(table));
+        List<byte[]> args = new ArrayList<>(ids.size() * 3 + 1);
+        args.add(bytes(fields ? "field" : "key"));
+        for (int i = 0; i < ids.size(); i++) {
+            String container = containers.get(ids.get(i));
+            keys.add(container);
+            addIndexKeys(keys, expected.get(i));
+
+            args.add(bytes(ids.get(i)));
+            args.add(bytes(container));
+            args.add(bytes(expected.get(i)));
+        }
+
+        return (Long) eval(PRUNE_INDEX_SCRIPT, Arrays.asList(bytes(keys)), args);
+    }
+
+    /**
+     * Lazily iterates the keys of a table held by its reverse index, in chunks fetched with
+     * {@code HSCAN} as {@link #iterateChunks(String, int)} does, so the index can be pruned of the
+     * keys whose value doesn't exist anymore.
+     *
+     * @param table the name of the table; must not be null
+     * @param count the hint of how many keys are fetched per round trip
+     * @return an iterator over the chunks of indexed keys of the table
+     */
+
+    public Iterator<List<String>> iterateIndexed(String table, int count) {
+        return new ChunkIterator<String>() {
+            private String cursor = ScanParams.SCAN_POINTER_START;
+
+            @Override
+            protected List<String> fetch() {
+                ScanResult<Map.Entry<String, String>> result;
+                try (Jedis jedis = jedisPool.getResource()) {
+                    result = jedis.hscan(makeIndex(table), cursor, new ScanParams().count(count));
+                }
+
+                List<String> chunk = new ArrayList<>(result.getResult().size());
+                for (Map.Entry<String, String> entry : result.getResult()) {
+                    chunk.add(entry.getKey());
+                }
+
+                cursor = result.getCursor();
+                finished = result.isCompleteIteration();
+                return chunk;
+            }
+        };
+    }
+
+    /**
+     * Counts the members of the set indexing a field value, with {@code SCARD}.
+     *
+     * @param table the name of the table; must not be null
+     * @param field the indexed field; must not be null
+     * @param value the value of the field; must not be null
+     * @return the number of keys indexed with the value, possibly of values that don't exist anymore
+     */
+
+    public long countIndexed(String table, String field, String value) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return jedis.scard(makeIndex(table, field, value));
+        }
+    }
+
+    /**
+     * Retrieves the keys of a table indexed with a field value, with {@code SMEMBERS}.
+     *
+     * @param table the name of the table; must not be null
+     * @param field the indexed field; must not be null
+     * @param value the value of the field; must not be null
+     * @return the keys indexed with the value, possibly of values that don't exist anymore
+     */
+
+    public Set<String> getIndexed(String table, String field, String value) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return jedis.smembers(makeIndex(table, field, value));
+        }
+    }
+
+    /**
+     * Retrieves the keys of a table whose numeric field is within a range, with {@code ZRANGEBYSCORE}.
+     *
+     * @param table the name of the table; must not be null
+     * @param field the indexed field; must not be null
+     * @param min   the inclusive minimum of the field
+     * @param max   the inclusive maximum of the field
+     * @return the keys in the range, by ascending field, possibly of values that don't exist anymore
+     */
+
+    public List<String> getIndexedRange(String table, String field, double min, double max) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return jedis.zrangeByScore(makeRangeIndex(table, field), min, max);
+        }
+    }
+
+    /**
+     * Returns the bucket of a key among the buckets of a table, from the CRC-32 of the key, so the
+     * keys spread evenly and every client agrees on the bucket of a key.
+     *
+     * @param key     the key; must not be null
+     * @param buckets the number of buckets of the table, must be positive
+     * @return the bucket of the key, from 0 to {@code buckets - 1}
+     */
+
+    public static int bucketOf(String key, int buckets) {
+        CRC32 crc = new CRC32();
+        crc.update(key.getBytes(StandardCharsets.UTF_8));
+        return (int) (crc.getValue() % buckets);
+    }
+
+    /**
+     * Constructs the table name of a bucket of a table, in the format "table@bucket". A bucket is
+     * a table hash on its own, so it's passed as the table to the hash operations of this cache.
+     *
+     * @param table  the name of the table; must not be null
+     * @param bucket the bucket within the table
+     * @return the table name of the bucket
+     */
+
+    public String makeBucket(String table, int bucket) {
+        return table + "@" + bucket;
+    }
+
+    /**
+     * Constructs the key of the reverse index of a table, in the format "name:table#", a hash
+     * holding the index keys every key of the table was added to.
+     *
+     * @param table the name of the table; must not be null
+     * @return the key of the reverse index
+     */
+
+    public String makeIndex(String table) {
+        return makeTable(table) + "#";
+    }
+
+    /**
+     * Constructs the key of the set indexing a field value, in the format "name:table#field:value".
+     *
+     * @param table the name of the table; must not be null
+     * @param field the indexed field, without any ':'; must not be null
+     * @param value the value of the field; must not be null
+     * @return the key of the set
+     */
+
+    public String makeIndex(String table, String field, String value) {
+        return makeIndex(table) + field + ":" + value;
+    }
+
+    /**
+     * Constructs the key of the sorted set indexing a numeric field, in the format "name:table#field".
+     *
+     * @param table the name of the table; must not be null
+     * @param field the indexed field, without any ':'; must not be null
+     * @return the key of the sorted set
+     */
+
+    public String makeRangeIndex(String table, String field) {
+        return makeIndex(table) + field;
+    }
+
+    /**
+     * Constructs the key of an entry of a table, in the format "name:table:key".
+     *
+     * @param table the name of the table; must not be null
+     * @param key   the key of the entry within the table; must not be null
+     * @return the key of the entry
+     */
+
+    public String makeEntry(String table, String key) {
+        return makeTable(table) + ":" + key;
+    }
+
     /**
      * Constructs a fully qualified table name by appending the class name to the specified table name.
      *
@@ -136,4 +1227,131 @@ public class RedisCache {
     public String makeTable(String table) {
         return name + ":" + table;
     }
-}
\ No newline at end of file
+
+    private static <V> Iterator<V> flatten(Iterator<List<V>> chunks) {
+        return new Iterator<V>() {
+            private Iterator<V> chunk = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!chunk.hasNext() && chunks.hasNext()) {
+                    chunk = chunks.next().iterator();
+                }
+
+                return chunk.hasNext();
+            }
+
+            @Override
+            public V next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                return chunk.next();
+            }
+        };
+    }
+
+    // glob matching every entry key of a table, escaping the glob characters of the name
+    private String entryPattern(String table) {
+        return escapePattern(makeTable(table) + ":") + "*";
+    }
+
+    private static String escapePattern(String value) {
+        StringBuilder builder = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            if (c == '*' || c == '?' || c == '[' || c == ']' || c == '\\') {
+                builder.append('\\');
+            }
+            builder.append(c);
+        }
+
+        return builder.toString();
+    }
+
+    // the JSON of the index keys of every key, or an empty string for the keys not indexed
+    private List<String> getIndexKeys(String table, List<String> keys) {
+        List<byte[]> values;
+        try (Jedis jedis = jedisPool.getResource()) {
+            values = jedis.hmget(bytes(makeIndex(table)), bytes(keys));
+        }
+
+        List<String> indexes = new ArrayList<>(values.size());
+        for (byte[] value : values) {
+            indexes.add(value == null ? "" : new String(value, StandardCharsets.UTF_8));
+        }
+
+        return indexes;
+    }
+
+    private static void addIndexKeys(Collection<String> keys, String index) {
+        if (index.isEmpty()) {
+            return;
+        }
+
+        IndexKeys indexKeys = GSON.fromJson(index, IndexKeys.class);
+        keys.addAll(indexKeys.sets);
+        keys.addAll(indexKeys.ranges);
+    }
+
+    private static byte[][] bytes(Collection<String> values) {
+        byte[][] bytes = new byte[values.size()][];
+        int i = 0;
+        for (String value : values) {
+            bytes[i++] = bytes(value);
+        }
+
+        return bytes;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The keys of the index JSON, read to declare them to the index scripts.
+     */
+    private static final class IndexKeys {
+
+        private List<String> sets = Collections.emptyList();
+        private List<String> ranges = Collections.emptyList();
+    }
+
+    /**
+     * Iterator over the non-empty chunks of a scan, fetched one round trip at a time.
+     */
+    private abstract static class ChunkIterator<V>
+            implements Iterator<List<V>> {
+
+        protected boolean finished;
+        private List<V> next;
+
+        /**
+         * Fetches the next chunk, setting {@link #finished} once the scan is complete.
+         */
+        protected abstract List<V> fetch();
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !finished) {
+                List<V> chunk = fetch();
+                if (!chunk.isEmpty()) {
+                    next = chunk;
+                }
+            }
+
+            return next != null;
+        }
+
+        @Override
+        public List<V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            List<V> chunk = next;
+            next = null;
+            return chunk;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package dev.alexissdev.storage.redis.connection;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A Lua script run on the server by a {@link RedisCache}, identified by the SHA-1 digest of its
+ * source, the same digest Redis returns for {@code SCRIPT LOAD}. Scripts are run with
+ * {@code EVALSHA}, so only the digest is sent once the server has loaded them.
+ */
+public final class RedisScript {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final byte[] source;
+    private final byte[] sha;
+
+    private RedisScript(byte[] source, byte[] sha) {
+        this.source = source;
+        this.sha = sha;
+    }
+
+    public static RedisScript of(String source) {
+        byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+        return new RedisScript(bytes, sha1(bytes));
+    }
+
+    public byte[] getSource() {
+        return source;
+    }
+
+    /**
+     * Returns the hexadecimal SHA-1 digest of the source, as ASCII bytes.
+     */
+    public byte[] getSha() {
+        return sha;
+    }
+
+    private static byte[] sha1(byte[] source) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1").digest(source);
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-1
+            throw new IllegalStateException(e);
+        }
+
+        byte[] hex = new byte[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[i * 2] = (byte) HEX[(digest[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = (byte) HEX[digest[i] & 0xF];
+        }
+
+        return hex;
+    }
+}
@@ -0,0 +1,31 @@
+package dev.alexissdev.storage.redis.connection;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Scripts loaded on the server of a pool. Every script is sent with {@code SCRIPT LOAD} before
+ * its first run and only called with {@code EVALSHA} afterwards. If the server lost its scripts,
+ * after a restart, a failover or a {@code SCRIPT FLUSH}, the script is loaded again and retried.
+ */
+final class ScriptRegistry {
+
+    private final Set<RedisScript> loaded = ConcurrentHashMap.newKeySet();
+
+    Object eval(Jedis jedis, RedisScript script, List<byte[]> keys, List<byte[]> args) {
+        if (loaded.add(script)) {
+            jedis.scriptLoad(script.getSource());
+        }
+
+        try {
+            return jedis.evalsha(script.getSha(), keys, args);
+        } catch (JedisNoScriptException e) {
+            jedis.scriptLoad(script.getSource());
+            return jedis.evalsha(script.getSha(), keys, args);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package dev.alexissdev.storage.redis.connection;
+
+import dev.alexissdev.storage.redis.metrics.CompressionMetrics;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compression of the values stored in Redis.
+ *
+ * <p>A compressed value starts with the {@link #DEFLATE} header byte, followed by the length of
+ * the raw value as 4 big endian bytes and the raw DEFLATE data. Any other value is stored as is,
+ * so values written before compression was enabled, or under its threshold, remain readable.
+ * Neither JSON nor binary records start with the header byte.
+ */
+public final class ValueCompression {
+
+    public static final byte DEFLATE = 0;
+
+    private static final int HEADER_LENGTH = 5;
+    // DEFLATE can't shrink data more than about 1032 times, a larger raw length is corrupted
+    private static final long MAX_RATIO = 1032;
+
+    // deflaters hold native memory, so they're reused by every thread instead of allocated per value
+    private static final ThreadLocal<Deflater> DEFLATER =
+            ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED, true));
+    private static final ThreadLocal<Inflater> INFLATER =
+            ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private ValueCompression() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Compresses a value if it's at least as large as the threshold and it shrinks.
+     *
+     * @param value     the raw value; must not be null
+     * @param threshold the minimum length of the compressed values
+     * @param metrics   the metrics recording the compression, null to not record it
+     * @return the compressed value with its header, or the raw value itself
+     */
+    public static byte[] compress(byte[] value, int threshold, @Nullable CompressionMetrics metrics) {
+        if (value.length < threshold) {
+            if (metrics != null) {
+                metrics.uncompressed(0);
+            }
+            return value;
+        }
+
+        long start = System.nanoTime();
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setInput(value);
+        deflater.finish();
+
+        // only worth storing if it's smaller than the raw value
+        byte[] compressed = new byte[value.length];
+        int length = HEADER_LENGTH;
+        while (!deflater.finished() && length < compressed.length) {
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+
+        if (!deflater.finished()) {
+            if (metrics != null) {
+                metrics.uncompressed(System.nanoTime() - start);
+            }
+            return value;
+        }
+
+        compressed[0] = DEFLATE;
+        compressed[1] = (byte) (value.length >>> 24);
+        compressed[2] = (byte) (value.length >>> 16);
+        compressed[3] = (byte) (value.length >>> 8);
+        compressed[4] = (byte) value.length;
+        compressed = Arrays.copyOf(compressed, length);
+        if (metrics != null) {
+            metrics.compressed(value.length, length, System.nanoTime() - start);
+        }
+
+        return compressed;
+    }
+
+    /**
+     * Decompresses a value written by {@link #compress(byte[], int, CompressionMetrics)}.
+     *
+     * @param value   the stored value; must not be null
+     * @param metrics the metrics recording the decompression, null to not record it
+     * @return the raw value
+     * @throws IllegalArgumentException if the value is corrupted, or its raw length couldn't have
+     *                                  been compressed into it, checked before allocating the raw value
+     */
+    public static byte[] decompress(byte[] value, @Nullable CompressionMetrics metrics) {
+        if (!isCompressed(value)) {
+            return value;
+        }
+
+        long start = System.nanoTime();
+        int rawLength = ((value[1] & 0xFF) << 24) | ((value[2] & 0xFF) << 16)
+                | ((value[3] & 0xFF) << 8) | (value[4] & 0xFF);
+        if (rawLength < 0 || rawLength > (value.length - HEADER_LENGTH) * MAX_RATIO) {
+            throw new IllegalArgumentException("Corrupted compressed value, length " + rawLength
+                    + " from " + (value.length - HEADER_LENGTH) + " compressed bytes");
+        }
+
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(value, HEADER_LENGTH, value.length - HEADER_LENGTH);
+
+        byte[] raw = new byte[rawLength];
+        try {
+            int length = 0;
+            while (length < rawLength) {
+                int inflated = inflater.inflate(raw, length, rawLength - length);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += inflated;
+            }
+
+            if (length != rawLength) {
+                throw new IllegalArgumentException(
+                        "Corrupted compressed value, " + length + " of " + rawLength + " bytes");
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupted compressed value", e);
+        }
+
+        if (metrics != null) {
+            metrics.decompressed(System.nanoTime() - start);
+        }
+
+        return raw;
+    }
+
+    public static boolean isCompressed(byte[] value) {
+        return value.length >= HEADER_LENGTH && value[0] == DEFLATE;
+    }
+}
@@ -0,0 +1,85 @@
+package dev.alexissdev.storage.redis.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the values compressed and decompressed by a {@code RedisModelService}, with the
+ * bytes saved and the time spent on them.
+ */
+public class CompressionMetrics {
+
+    private final LongAdder compressedValues = new LongAdder();
+    private final LongAdder uncompressedValues = new LongAdder();
+    private final LongAdder decompressedValues = new LongAdder();
+    private final LongAdder rawBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder compressNanos = new LongAdder();
+    private final LongAdder decompressNanos = new LongAdder();
+
+    /**
+     * Records a value written compressed.
+     */
+    public void compressed(int rawLength, int compressedLength, long nanos) {
+        compressedValues.increment();
+        rawBytes.add(rawLength);
+        compressedBytes.add(compressedLength);
+        compressNanos.add(nanos);
+    }
+
+    /**
+     * Records a value written as is, because it's under the threshold or it didn't shrink.
+     * The time spent compressing it, if any, is still accounted.
+     */
+    public void uncompressed(long nanos) {
+        uncompressedValues.increment();
+        compressNanos.add(nanos);
+    }
+
+    /**
+     * Records a compressed value read.
+     */
+    public void decompressed(long nanos) {
+        decompressedValues.increment();
+        decompressNanos.add(nanos);
+    }
+
+    public long getCompressedValues() {
+        return compressedValues.sum();
+    }
+
+    public long getUncompressedValues() {
+        return uncompressedValues.sum();
+    }
+
+    public long getDecompressedValues() {
+        return decompressedValues.sum();
+    }
+
+    /**
+     * Returns the size of the compressed values before their compression.
+     */
+    public long getRawBytes() {
+        return rawBytes.sum();
+    }
+
+    public long getCompressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    /**
+     * Returns the compressed size of the compressed values over their raw size, or 1 if none
+     * has been compressed yet.
+     */
+    public double getRatio() {
+        long raw = rawBytes.sum();
+        return raw == 0 ? 1 : (double) compressedBytes.sum() / raw;
+    }
+
+    public long getCompressNanos() {
+        return compressNanos.sum();
+    }
+
+    public long getDecompressNanos() {
+        return decompressNanos.sum();
+    }
+}
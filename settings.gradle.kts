@@ -2,7 +2,7 @@ rootProject.name = "lightweight-storage"
 
 arrayOf(
     "api", "api-codec", "mongo-legacy-dist",
-    "redis-dist", "bukkit-yaml-dist"
+    "mongo-reactive-dist", "redis-dist", "bukkit-yaml-dist"
 ).forEach {
     includePrefixed(it)
 }